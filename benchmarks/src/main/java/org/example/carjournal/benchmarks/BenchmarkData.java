@@ -0,0 +1,51 @@
+package org.example.carjournal.benchmarks;
+
+import org.example.carjournal.dao.XmlCarRecordDAO;
+import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.util.RecordGenerator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Подготовка синтетических журналов для бенчмарков
+ */
+final class BenchmarkData {
+    static final long SEED = 42;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Создает временный каталог со снимком XML из заданного количества записей
+     * @param size количество записей
+     * @return путь к файлу снимка
+     */
+    static Path writeJournal(int size) {
+        try {
+            Path dir = Files.createTempDirectory("car-journal-bench");
+            Path file = dir.resolve("car_records.xml");
+            List<CarRecord> records = new RecordGenerator(SEED).generate(size);
+            XmlCarRecordDAO.createXmlMapper().writeValue(file.toFile(), records);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Удаляет каталог журнала вместе с файлами журнала изменений
+     */
+    static void delete(Path file) {
+        try (Stream<Path> files = Files.walk(file.getParent())) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
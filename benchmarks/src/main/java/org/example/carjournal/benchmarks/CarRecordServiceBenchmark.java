@@ -0,0 +1,77 @@
+package org.example.carjournal.benchmarks;
+
+import org.example.carjournal.dao.XmlCarRecordDAO;
+import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.service.CarRecordService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск и статистика сервисного слоя на журнале заданного размера
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CarRecordServiceBenchmark {
+
+    @Param({"1000", "100000"})
+    private int size;
+
+    private Path file;
+    private XmlCarRecordDAO dao;
+    private CarRecordService service;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        file = BenchmarkData.writeJournal(size);
+        dao = new XmlCarRecordDAO(file.toString());
+        service = new CarRecordService(dao);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.close();
+        BenchmarkData.delete(file);
+    }
+
+    @Benchmark
+    public List<CarRecord> searchRecords() {
+        return service.searchRecords("замена масл");
+    }
+
+    /**
+     * Поиск по короткому префиксу, совпадающему со многими словами
+     */
+    @Benchmark
+    public List<String> searchRecordIdsShortPrefix() {
+        return service.searchRecordIds("з");
+    }
+
+    @Benchmark
+    public List<CarRecord> findFuelAnomalies() {
+        return service.findFuelAnomalies();
+    }
+
+    @Benchmark
+    public double calculateCostPerKm() {
+        return service.calculateCostPerKm();
+    }
+}
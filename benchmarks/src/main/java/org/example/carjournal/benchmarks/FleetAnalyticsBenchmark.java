@@ -0,0 +1,71 @@
+package org.example.carjournal.benchmarks;
+
+import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.service.ColumnarRecordStore;
+import org.example.carjournal.service.FleetAnalytics;
+import org.example.carjournal.util.RecordGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Аналитика по парку на наборе записей в памяти.
+ * Масштабирование по ядрам проверяется запуском с разным
+ * {@code -Djava.util.concurrent.ForkJoinPool.common.parallelism}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FleetAnalyticsBenchmark {
+
+    @Param({"100000", "1000000"})
+    private int size;
+
+    @Param({"50"})
+    private int vehicles;
+
+    private List<CarRecord> records;
+    private ColumnarRecordStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        records = new RecordGenerator(42).generate(size);
+        for (int i = 0; i < records.size(); i++) {
+            records.get(i).setVehicleId("vehicle-" + (long) i * vehicles / size);
+        }
+        store = new ColumnarRecordStore(records);
+    }
+
+    @Benchmark
+    public List<FleetAnalytics.Summary> analyzeByMonth() {
+        return FleetAnalytics.analyze(store, FleetAnalytics.Period.MONTH);
+    }
+
+    @Benchmark
+    public List<FleetAnalytics.Summary> analyzeTotal() {
+        return FleetAnalytics.analyze(store, FleetAnalytics.Period.ALL);
+    }
+
+    /**
+     * Расчет по списку записей, включая построение колонок
+     */
+    @Benchmark
+    public List<FleetAnalytics.Summary> analyzeRecordList() {
+        return FleetAnalytics.analyze(records, FleetAnalytics.Period.ALL);
+    }
+}
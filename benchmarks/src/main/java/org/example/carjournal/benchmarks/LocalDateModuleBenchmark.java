@@ -0,0 +1,72 @@
+package org.example.carjournal.benchmarks;
+
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import org.example.carjournal.dao.XmlCarRecordDAO;
+import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.util.LocalDateModule;
+import org.example.carjournal.util.RecordGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация дат модулем {@link LocalDateModule} и одной записи целиком
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocalDateModuleBenchmark {
+
+    private XmlMapper dateMapper;
+    private XmlMapper recordMapper;
+    private LocalDate date;
+    private String dateXml;
+    private CarRecord record;
+    private byte[] recordXml;
+
+    @Setup
+    public void setUp() throws IOException {
+        dateMapper = new XmlMapper();
+        dateMapper.registerModule(new LocalDateModule());
+        date = LocalDate.of(2024, 5, 17);
+        dateXml = dateMapper.writeValueAsString(date);
+
+        recordMapper = XmlCarRecordDAO.createXmlMapper();
+        record = new RecordGenerator(BenchmarkData.SEED).next();
+        recordXml = recordMapper.writeValueAsBytes(record);
+    }
+
+    @Benchmark
+    public String serializeDate() throws IOException {
+        return dateMapper.writeValueAsString(date);
+    }
+
+    @Benchmark
+    public LocalDate deserializeDate() throws IOException {
+        return dateMapper.readValue(dateXml, LocalDate.class);
+    }
+
+    @Benchmark
+    public byte[] serializeRecord() throws IOException {
+        return recordMapper.writeValueAsBytes(record);
+    }
+
+    @Benchmark
+    public CarRecord deserializeRecord() throws IOException {
+        return recordMapper.readValue(recordXml, CarRecord.class);
+    }
+}
@@ -0,0 +1,123 @@
+package org.example.carjournal.benchmarks;
+
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import org.example.carjournal.dao.RecordQuery;
+import org.example.carjournal.dao.XmlCarRecordDAO;
+import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.model.RecordStatus;
+import org.example.carjournal.util.RecordGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Загрузка, сохранение и выборки XML-хранилища.
+ * Размер журнала задается параметром size, например: -p size=1000000
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XmlCarRecordDAOBenchmark {
+    private static final RecordQuery ACTIVE = RecordQuery.builder().statuses(RecordStatus.ACTIVE).build();
+    private static final RecordQuery LATEST_ACTIVE = RecordQuery.builder()
+            .statuses(RecordStatus.ACTIVE)
+            .sortBy(RecordQuery.Sort.DATE_DESC)
+            .limit(20)
+            .fields(RecordQuery.Field.TITLE)
+            .build();
+
+    @Param({"1000", "100000"})
+    private int size;
+
+    private Path loadFile;
+    private Path storeFile;
+    private XmlCarRecordDAO dao;
+    private List<CarRecord> records;
+    private XmlMapper xmlMapper;
+    private RecordGenerator generator;
+    private String[] ids;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        loadFile = BenchmarkData.writeJournal(size);
+        storeFile = BenchmarkData.writeJournal(size);
+        dao = new XmlCarRecordDAO(storeFile.toString());
+        records = dao.findAll();
+        xmlMapper = XmlCarRecordDAO.createXmlMapper();
+        generator = new RecordGenerator(BenchmarkData.SEED + 1);
+        ids = records.stream().map(CarRecord::getId).toArray(String[]::new);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dao.close();
+        BenchmarkData.delete(loadFile);
+        BenchmarkData.delete(storeFile);
+    }
+
+    /**
+     * Открытие хранилища: потоковое чтение снимка и построение индексов
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int load() {
+        XmlCarRecordDAO loaded = new XmlCarRecordDAO(loadFile.toString());
+        int count = loaded.count();
+        loaded.close();
+        return count;
+    }
+
+    /**
+     * Сериализация всего журнала в XML (путь записи снимка)
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void writeSnapshot() throws IOException {
+        xmlMapper.writeValue(OutputStream.nullOutputStream(), records);
+    }
+
+    /**
+     * Сохранение одной новой записи с ожиданием записи на диск
+     */
+    @Benchmark
+    public void save() {
+        dao.save(generator.next());
+        dao.flush().join();
+    }
+
+    @Benchmark
+    public CarRecord findById() {
+        next = (next + 1) % ids.length;
+        return dao.findById(ids[next]).orElse(null);
+    }
+
+    @Benchmark
+    public List<CarRecord> findByStatus() {
+        return dao.find(ACTIVE);
+    }
+
+    @Benchmark
+    public List<CarRecord> latestActive() {
+        return dao.find(LATEST_ACTIVE);
+    }
+}
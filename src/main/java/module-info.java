@@ -1,6 +1,8 @@
 module org.example.carjournal {
     requires javafx.controls;
     requires javafx.fxml;
+    requires java.xml;
+    requires jdk.unsupported;
     requires com.fasterxml.jackson.databind;
     requires com.fasterxml.jackson.dataformat.xml;
     requires com.fasterxml.jackson.datatype.jsr310;
@@ -17,4 +19,5 @@ module org.example.carjournal {
     exports org.example.carjournal.service;
     exports org.example.carjournal.model;
     exports org.example.carjournal.util;
+    exports org.example.carjournal.tools;
 }
\ No newline at end of file
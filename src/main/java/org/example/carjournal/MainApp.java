@@ -1,8 +1,11 @@
 package org.example.carjournal;
 
 import org.example.carjournal.controller.MainController;
+import org.example.carjournal.dao.ConcurrentCarRecordDAO;
+import org.example.carjournal.dao.HistoryLog;
 import org.example.carjournal.dao.XmlCarRecordDAO;
 import org.example.carjournal.service.CarRecordService;
+import org.example.carjournal.service.OverdueSweeper;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -10,20 +13,29 @@ import javafx.scene.Scene;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
 
 public class MainApp extends Application {
+    private static final String HISTORY_FILE = "car_history.log";
+
+    private CarRecordService carRecordService;
+    private MainController controller;
+    private OverdueSweeper overdueSweeper;
+
     @Override
     public void start(Stage primaryStage) throws IOException {
-        // Инициализация зависимостей
-        XmlCarRecordDAO carRecordDAO = new XmlCarRecordDAO();
-        CarRecordService carRecordService = new CarRecordService(carRecordDAO);
+        // Инициализация зависимостей; хранилище доступно и из фоновых потоков
+        ConcurrentCarRecordDAO carRecordDAO = new ConcurrentCarRecordDAO(new XmlCarRecordDAO());
+        HistoryLog history = new HistoryLog(Path.of(HISTORY_FILE), HistoryLog.DEFAULT_RETENTION);
+        carRecordService = new CarRecordService(carRecordDAO, history);
 
         // Загрузка FXML
         FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/main.fxml"));
         Parent root = loader.load();
 
         // Установка сервиса в контроллер
-        MainController controller = loader.getController();
+        controller = loader.getController();
         controller.setCarRecordService(carRecordService);
 
         // Настройка сцены
@@ -31,6 +43,24 @@ public class MainApp extends Application {
         primaryStage.setTitle("Автомобильный журнал");
         primaryStage.setScene(scene);
         primaryStage.show();
+
+        // Просроченные записи переводятся в статус "В процессе" по мере наступления сроков
+        overdueSweeper = new OverdueSweeper(carRecordService, Clock.systemDefaultZone());
+        overdueSweeper.start();
+    }
+
+    @Override
+    public void stop() {
+        if (controller != null) {
+            controller.shutdown();
+        }
+        if (overdueSweeper != null) {
+            overdueSweeper.close();
+        }
+        // Дожидаемся фоновой записи и сворачиваем журнал изменений в снимок перед выходом
+        if (carRecordService != null) {
+            carRecordService.close();
+        }
     }
 
     public static void main(String[] args) {
@@ -1,26 +1,39 @@
 package org.example.carjournal.controller;
 
 import org.example.carjournal.model.*;
+import org.example.carjournal.dao.PageRequest;
+import org.example.carjournal.dao.StaleRecordException;
 import org.example.carjournal.service.CarRecordService;
+import org.example.carjournal.service.RecordChangeEvent;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.collections.transformation.SortedList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.util.Duration;
 
 import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 /**
  * Контроллер главного окна приложения.
  * Управляет пользовательским интерфейсом и обрабатывает действия пользователя.
  */
 public class MainController {
-    @FXML private TableView<CarRecord> recordsTable;
-    @FXML private TableColumn<CarRecord, String> titleColumn;
-    @FXML private TableColumn<CarRecord, RecordType> typeColumn;
-    @FXML private TableColumn<CarRecord, Double> costColumn;
-    @FXML private TableColumn<CarRecord, LocalDate> dateColumn;
-    @FXML private TableColumn<CarRecord, RecordStatus> statusColumn;
+    @FXML private TableView<CarRecordSummary> recordsTable;
+    @FXML private TableColumn<CarRecordSummary, String> titleColumn;
+    @FXML private TableColumn<CarRecordSummary, RecordType> typeColumn;
+    @FXML private TableColumn<CarRecordSummary, Double> costColumn;
+    @FXML private TableColumn<CarRecordSummary, LocalDate> dateColumn;
+    @FXML private TableColumn<CarRecordSummary, RecordStatus> statusColumn;
 
     @FXML private TextField titleField;
     @FXML private TextArea descriptionField;
@@ -40,9 +53,48 @@ public class MainController {
     @FXML private ListView<CarRecord> anomaliesListView;
 
     private CarRecordService carRecordService;
-    private ObservableList<CarRecord> records;
+    /**
+     * Все записи журнала, загружаемые из хранилища постранично
+     */
+    private PagedRecordList pagedRecords;
+    /**
+     * Результаты текущего поиска (null, если поиск не выполняется)
+     */
+    private ObservableList<CarRecordSummary> searchResults;
+    /**
+     * Строка поиска, по которой получены searchResults
+     */
+    private String searchQuery;
+    /**
+     * Позиции записей в списке searchResults по идентификатору
+     */
+    private final Map<String, Integer> positions = new HashMap<>();
+    /**
+     * Полная запись выделенной строки, загружаемая при выборе строки (null, если строка не выбрана)
+     */
+    private CarRecord selectedRecord;
+    /**
+     * Список таблицы изменяется событием хранилища; выделение строки при этом
+     * восстанавливается, а форма и открытая версия записи не меняются
+     */
+    private boolean applyingChange;
     private boolean initialized = false;
 
+    /**
+     * Задержка перед выполнением поиска после последнего изменения текста
+     */
+    private final PauseTransition searchDebounce = new PauseTransition(Duration.millis(250));
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "record-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * Номер последнего запроса; результаты более ранних запросов отбрасываются
+     */
+    private long searchGeneration;
+    private Future<?> pendingSearch;
+
     /**
      * Инициализация контроллера после загрузки FXML
      */
@@ -51,6 +103,7 @@ public class MainController {
         setupTableColumns();
         setupComboBoxes();
         setupAnomaliesListView();
+        setupSearch();
         // Не загружаем записи здесь, ждем установки carRecordService
         datePicker.setValue(LocalDate.now());
         initialized = true;
@@ -62,10 +115,24 @@ public class MainController {
     public void setCarRecordService(CarRecordService service) {
         this.carRecordService = service;
         if (initialized && carRecordService != null) {
+            carRecordService.addChangeListener(event -> {
+                if (Platform.isFxApplicationThread()) {
+                    applyChange(event);
+                } else {
+                    Platform.runLater(() -> applyChange(event));
+                }
+            });
             loadRecords();
             updateStatistics();
         }
     }
+    /**
+     * Останавливает фоновый поиск. Вызывается при завершении приложения
+     */
+    public void shutdown() {
+        searchDebounce.stop();
+        searchExecutor.shutdownNow();
+    }
 
 
     /**
@@ -78,7 +145,7 @@ public class MainController {
         dateColumn.setCellValueFactory(new PropertyValueFactory<>("date"));
         statusColumn.setCellValueFactory(new PropertyValueFactory<>("status"));
 
-        costColumn.setCellFactory(column -> new TableCell<CarRecord, Double>() {
+        costColumn.setCellFactory(column -> new TableCell<CarRecordSummary, Double>() {
             @Override
             protected void updateItem(Double item, boolean empty) {
                 super.updateItem(item, empty);
@@ -90,6 +157,17 @@ public class MainController {
             }
         });
 
+        // Все записи сортируются хранилищем (поддерживается сортировка по дате),
+        // результаты поиска - в памяти через SortedList
+        recordsTable.setSortPolicy(table -> {
+            if (table.getItems() != pagedRecords) {
+                return TableView.DEFAULT_SORT_POLICY.call(table);
+            }
+            Optional<PageRequest.Order> order = pageOrder();
+            order.ifPresent(pagedRecords::setOrder);
+            return order.isPresent();
+        });
+
         // Добавляем обработчик выбора строки
         recordsTable.getSelectionModel().selectedItemProperty().addListener(
                 (observable, oldValue, newValue) -> handleRowSelect(newValue)
@@ -106,10 +184,104 @@ public class MainController {
         priorityComboBox.getSelectionModel().selectFirst();
     }
 
+    private void setupSearch() {
+        searchDebounce.setOnFinished(event -> runSearch(searchField.getText()));
+        searchField.textProperty().addListener((observable, oldValue, newValue) -> searchDebounce.playFromStart());
+    }
+
     private void loadRecords() {
         if (carRecordService != null) {
-            records = FXCollections.observableArrayList(carRecordService.getAllRecords());
-            recordsTable.setItems(records);
+            pagedRecords = new PagedRecordList(carRecordService);
+            pageOrder().ifPresent(pagedRecords::setOrder);
+            recordsTable.setItems(pagedRecords);
+        }
+    }
+
+    /**
+     * Определяет порядок страниц по сортировке таблицы
+     * @return порядок или empty, если хранилище не поддерживает такую сортировку
+     */
+    private Optional<PageRequest.Order> pageOrder() {
+        List<TableColumn<CarRecordSummary, ?>> sortOrder = recordsTable.getSortOrder();
+        if (sortOrder.isEmpty()) {
+            return Optional.of(PageRequest.Order.INSERTION);
+        }
+        if (sortOrder.size() == 1 && sortOrder.get(0) == dateColumn) {
+            return Optional.of(dateColumn.getSortType() == TableColumn.SortType.ASCENDING
+                    ? PageRequest.Order.DATE_ASC : PageRequest.Order.DATE_DESC);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Применяет изменения записей к списку таблицы на месте, без его пересоздания
+     * и без повторного поиска: порядок строк, выделение и прокрутка сохраняются.
+     * Форма редактирования не перезаполняется, поэтому введенные данные не теряются,
+     * а сохранение поверх изменившейся записи завершится конфликтом версий.
+     */
+    private void applyChange(RecordChangeEvent event) {
+        if (pagedRecords == null) return;
+
+        CarRecordSummary selected = recordsTable.getSelectionModel().getSelectedItem();
+        String selectedId = selected != null ? selected.getId() : null;
+
+        applyingChange = true;
+        try {
+            pagedRecords.applyChange(event);
+            if (searchResults != null) {
+                if (event.getType() == RecordChangeEvent.Type.REMOVED) {
+                    for (String id : event.getIds()) {
+                        removeFromSearchResults(id);
+                    }
+                } else {
+                    for (CarRecord record : event.getRecords()) {
+                        updateSearchResult(record);
+                    }
+                }
+            }
+
+            // Замена элемента списка сбрасывает выделение строки
+            if (selectedId != null && recordsTable.getSelectionModel().getSelectedItem() == null) {
+                carRecordService.getRecordById(selectedId)
+                        .ifPresent(record -> recordsTable.getSelectionModel().select(CarRecordSummary.of(record)));
+            }
+        } finally {
+            applyingChange = false;
+        }
+        updateStatistics();
+    }
+
+    /**
+     * Обновляет запись в результатах поиска: найденная ранее запись заменяется
+     * на месте или убирается, если больше не подходит; новая подходящая запись
+     * добавляется в конец
+     */
+    private void updateSearchResult(CarRecord record) {
+        String id = record.getId();
+        Integer position = positions.get(id);
+        boolean matches = carRecordService.matchesSearch(id, searchQuery);
+        if (position == null) {
+            if (matches) {
+                positions.put(id, searchResults.size());
+                searchResults.add(CarRecordSummary.of(record));
+            }
+        } else if (matches) {
+            searchResults.set(position, CarRecordSummary.of(record));
+        } else {
+            removeFromSearchResults(id);
+        }
+    }
+
+    /**
+     * Удаляет запись из результатов поиска, сохраняя порядок остальных
+     */
+    private void removeFromSearchResults(String id) {
+        Integer position = positions.remove(id);
+        if (position == null) return;
+
+        searchResults.remove((int) position);
+        for (int i = position; i < searchResults.size(); i++) {
+            positions.put(searchResults.get(i).getId(), i);
         }
     }
 
@@ -117,10 +289,8 @@ public class MainController {
     private void handleAddRecord() {
         if (validateInput()) {
             CarRecord record = createRecordFromForm();
-            carRecordService.addRecord(record);
+            carRecordService.addRecord(record).whenComplete(this::handleSaveResult);
             clearForm();
-            loadRecords();
-            updateStatistics();
             showAlert("Успех", "Запись успешно добавлена", Alert.AlertType.INFORMATION);
         }
     }
@@ -129,15 +299,23 @@ public class MainController {
      */
     @FXML
     private void handleUpdateRecord() {
-        CarRecord selected = recordsTable.getSelectionModel().getSelectedItem();
+        CarRecord selected = selectedRecord;
         if (selected != null && validateInput()) {
-            CarRecord updatedRecord = createRecordFromForm();
-            updatedRecord.setId(selected.getId());
-            updatedRecord.setHistory(selected.getHistory());
-            carRecordService.updateRecord(updatedRecord);
+            // Поля, которых нет в форме (идентификатор, версия, автомобиль), берутся из открытой записи
+            CarRecord updatedRecord = fillRecordFromForm(selected.copy());
+            try {
+                carRecordService.updateRecord(updatedRecord).whenComplete(this::handleSaveResult);
+            } catch (StaleRecordException e) {
+                // Показываем актуальную версию записи, чтобы изменение можно было повторить
+                selectedRecord = carRecordService.getRecordById(selected.getId()).orElse(null);
+                if (selectedRecord != null) {
+                    populateForm(selectedRecord);
+                }
+                showAlert("Конфликт", "Запись была изменена или удалена после открытия. "
+                        + "Проверьте актуальные данные и повторите изменение", Alert.AlertType.WARNING);
+                return;
+            }
             clearForm();
-            loadRecords();
-            updateStatistics();
             showAlert("Успех", "Запись успешно обновлена", Alert.AlertType.INFORMATION);
         } else {
             showAlert("Ошибка", "Выберите запись для редактирования", Alert.AlertType.WARNING);
@@ -148,7 +326,7 @@ public class MainController {
      */
     @FXML
     private void handleDeleteRecord() {
-        CarRecord selected = recordsTable.getSelectionModel().getSelectedItem();
+        CarRecordSummary selected = recordsTable.getSelectionModel().getSelectedItem();
         if (selected != null) {
             Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
             alert.setTitle("Подтверждение удаления");
@@ -157,10 +335,8 @@ public class MainController {
 
             Optional<ButtonType> result = alert.showAndWait();
             if (result.isPresent() && result.get() == ButtonType.OK) {
-                carRecordService.deleteRecord(selected.getId());
+                carRecordService.deleteRecord(selected.getId()).whenComplete(this::handleSaveResult);
                 clearForm();
-                loadRecords();
-                updateStatistics();
                 showAlert("Успех", "Запись успешно удалена", Alert.AlertType.INFORMATION);
             }
         } else {
@@ -168,31 +344,97 @@ public class MainController {
         }
     }
     /**
-     * Выполняет поиск записей по введенному тексту
+     * Выполняет поиск записей по введенному тексту без ожидания паузы в наборе
      */
     @FXML
     private void handleSearch() {
-        String query = searchField.getText();
-        if (query != null && !query.trim().isEmpty()) {
-            recordsTable.setItems(FXCollections.observableArrayList(
-                    carRecordService.searchRecords(query)
-            ));
-        } else {
-            loadRecords();
+        searchDebounce.stop();
+        runSearch(searchField.getText());
+    }
+
+    /**
+     * Запускает поиск в фоновом потоке и показывает найденные записи в таблице.
+     * Незапущенный предыдущий запрос отменяется, а результаты устаревших
+     * запросов игнорируются.
+     */
+    private void runSearch(String query) {
+        if (carRecordService == null) return;
+
+        long generation = ++searchGeneration;
+        if (pendingSearch != null) {
+            pendingSearch.cancel(false);
+            pendingSearch = null;
+        }
+
+        if (query == null || query.trim().isEmpty()) {
+            showSearchResults(null, null);
+            return;
         }
+
+        pendingSearch = searchExecutor.submit(() -> {
+            try {
+                List<String> ids = carRecordService.searchRecordIds(query);
+                Platform.runLater(() -> {
+                    if (generation == searchGeneration) {
+                        pendingSearch = null;
+                        showSearchResults(query, ids);
+                    }
+                });
+            } catch (RuntimeException e) {
+                System.err.println("Error searching records: " + e.getMessage());
+                e.printStackTrace();
+            }
+        });
     }
 
-    private void handleRowSelect(CarRecord selected) {
-        if (selected != null) {
-            populateForm(selected);
+    /**
+     * Переключает таблицу между результатами поиска и всеми записями
+     * @param query строка поиска или null для показа всех записей
+     * @param ids идентификаторы найденных записей или null для показа всех записей
+     */
+    private void showSearchResults(String query, List<String> ids) {
+        positions.clear();
+        searchQuery = query;
+        if (ids == null) {
+            searchResults = null;
+            if (pagedRecords != null && recordsTable.getItems() != pagedRecords) {
+                // Сортировку, недоступную для постраничной загрузки, сбрасываем
+                if (!pageOrder().isPresent()) {
+                    recordsTable.getSortOrder().clear();
+                }
+                pageOrder().ifPresent(pagedRecords::setOrder);
+                recordsTable.setItems(pagedRecords);
+            }
+            return;
+        }
+
+        searchResults = FXCollections.observableArrayList();
+        for (String id : ids) {
+            carRecordService.getRecordById(id).ifPresent(record -> {
+                positions.put(id, searchResults.size());
+                searchResults.add(CarRecordSummary.of(record));
+            });
+        }
+        SortedList<CarRecordSummary> sortedResults = new SortedList<>(searchResults);
+        sortedResults.comparatorProperty().bind(recordsTable.comparatorProperty());
+        recordsTable.setItems(sortedResults);
+    }
+
+    /**
+     * Загружает полную запись выбранной строки: таблица содержит только краткие
+     * представления, а описание и история читаются из хранилища при выборе
+     */
+    private void handleRowSelect(CarRecordSummary selected) {
+        if (applyingChange) return;
+        selectedRecord = selected == null ? null : carRecordService.getRecordById(selected.getId()).orElse(null);
+        if (selectedRecord != null) {
+            populateForm(selectedRecord);
         }
     }
 
     @FXML
     private void handleUpdateStatuses() {
-        carRecordService.updateStatuses();
-        loadRecords();
-        updateStatistics();
+        carRecordService.updateStatuses().whenComplete(this::handleSaveResult);
         showAlert("Обновление", "Статусы обновлены", Alert.AlertType.INFORMATION);
     }
 
@@ -229,7 +471,13 @@ public class MainController {
     }
 
     private CarRecord createRecordFromForm() {
-        CarRecord record = new CarRecord();
+        return fillRecordFromForm(new CarRecord());
+    }
+
+    /**
+     * Переносит значения полей формы в запись; остальные поля записи не меняются
+     */
+    private CarRecord fillRecordFromForm(CarRecord record) {
         record.setTitle(titleField.getText());
         record.setDescription(descriptionField.getText());
         record.setType(typeComboBox.getValue());
@@ -296,6 +544,16 @@ public class MainController {
         nextMaintenanceLabel.setText("Прогноз ТО: рассчитается при добавлении записей ТО");
     }
 
+    /**
+     * Сообщает об ошибке фонового сохранения изменений
+     */
+    private void handleSaveResult(Void result, Throwable error) {
+        if (error != null) {
+            Platform.runLater(() -> showAlert("Ошибка",
+                    "Не удалось сохранить изменения: " + error.getMessage(), Alert.AlertType.ERROR));
+        }
+    }
+
     private void showAlert(String title, String message, Alert.AlertType type) {
         Alert alert = new Alert(type);
         alert.setTitle(title);
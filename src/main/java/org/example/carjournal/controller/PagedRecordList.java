@@ -0,0 +1,158 @@
+package org.example.carjournal.controller;
+
+import org.example.carjournal.dao.PageRequest;
+import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.model.CarRecordSummary;
+import org.example.carjournal.service.CarRecordService;
+import org.example.carjournal.service.RecordChangeEvent;
+import javafx.collections.ObservableListBase;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Список записей для таблицы, загружающий данные из хранилища страницами.
+ * Страницы состоят из кратких представлений записей ({@link CarRecordSummary}),
+ * поэтому описание и история записей в список не попадают.
+ * <p>
+ * Таблица запрашивает только видимые строки, поэтому в памяти держится не больше
+ * {@link #MAX_CACHED_PAGES} страниц, давно не использованные страницы вытесняются.
+ * Изменения записей применяются к загруженным страницам на месте; если позиция
+ * изменения неизвестна, список перечитывается целиком.
+ */
+class PagedRecordList extends ObservableListBase<CarRecordSummary> {
+    static final int PAGE_SIZE = 200;
+    private static final int MAX_CACHED_PAGES = 16;
+
+    private final CarRecordService carRecordService;
+    private final Map<Integer, List<CarRecordSummary>> pages =
+            new LinkedHashMap<>(MAX_CACHED_PAGES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, List<CarRecordSummary>> eldest) {
+                    return size() > MAX_CACHED_PAGES;
+                }
+            };
+    private PageRequest.Order order = PageRequest.Order.INSERTION;
+    private int size;
+
+    PagedRecordList(CarRecordService carRecordService) {
+        this.carRecordService = carRecordService;
+        this.size = carRecordService.countRecords();
+    }
+
+    @Override
+    public CarRecordSummary get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        int pageNumber = index / PAGE_SIZE;
+        List<CarRecordSummary> page = pages.get(pageNumber);
+        if (page == null) {
+            page = carRecordService.getSummaryPage(
+                    PageRequest.of(pageNumber * PAGE_SIZE, PAGE_SIZE).sorted(order));
+            pages.put(pageNumber, page);
+        }
+        int offset = index % PAGE_SIZE;
+        // Хранилище могло измениться в обход событий; отсутствующую строку показываем пустой
+        return offset < page.size() ? page.get(offset) : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    PageRequest.Order getOrder() {
+        return order;
+    }
+
+    /**
+     * Меняет порядок записей и перечитывает список
+     */
+    void setOrder(PageRequest.Order order) {
+        if (this.order != order) {
+            this.order = order;
+            reload();
+        }
+    }
+
+    /**
+     * Сбрасывает загруженные страницы и сообщает таблице о замене всех строк
+     */
+    void reload() {
+        int oldSize = size;
+        pages.clear();
+        size = carRecordService.countRecords();
+
+        beginChange();
+        nextReplace(0, size, Collections.nCopies(oldSize, null));
+        endChange();
+    }
+
+    /**
+     * Применяет событие изменения записей.
+     * В порядке добавления новые записи попадают в конец, а измененные и удаленные
+     * ищутся среди загруженных страниц; в остальных случаях список перечитывается.
+     */
+    void applyChange(RecordChangeEvent event) {
+        int removedIndex = -1;
+        if (event.getType() == RecordChangeEvent.Type.REMOVED && event.getIds().size() == 1) {
+            removedIndex = indexOfLoaded(event.getIds().get(0));
+        }
+        if (order != PageRequest.Order.INSERTION
+                || (event.getType() == RecordChangeEvent.Type.REMOVED && removedIndex < 0)) {
+            reload();
+            return;
+        }
+
+        beginChange();
+        switch (event.getType()) {
+            case ADDED:
+                for (int i = 0; i < event.getRecords().size(); i++) {
+                    pages.remove(size / PAGE_SIZE);
+                    nextAdd(size, size + 1);
+                    size++;
+                }
+                break;
+            case UPDATED:
+                for (CarRecord record : event.getRecords()) {
+                    int index = indexOfLoaded(record.getId());
+                    if (index >= 0) {
+                        List<CarRecordSummary> page = pages.get(index / PAGE_SIZE);
+                        nextSet(index, page.set(index % PAGE_SIZE, CarRecordSummary.of(record)));
+                    }
+                }
+                break;
+            case REMOVED:
+                int removedPage = removedIndex / PAGE_SIZE;
+                CarRecordSummary removed = pages.get(removedPage).get(removedIndex % PAGE_SIZE);
+                // Последующие страницы сдвигаются на одну запись
+                pages.keySet().removeIf(pageNumber -> pageNumber >= removedPage);
+                size--;
+                nextRemove(removedIndex, removed);
+                break;
+        }
+        endChange();
+    }
+
+    /**
+     * Ищет запись среди загруженных страниц, не обращаясь к хранилищу
+     * @return индекс записи в списке или -1
+     */
+    private int indexOfLoaded(String id) {
+        Iterator<Map.Entry<Integer, List<CarRecordSummary>>> entries = pages.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Integer, List<CarRecordSummary>> entry = entries.next();
+            List<CarRecordSummary> page = entry.getValue();
+            for (int i = 0; i < page.size(); i++) {
+                if (page.get(i).getId().equals(id)) {
+                    return entry.getKey() * PAGE_SIZE + i;
+                }
+            }
+        }
+        return -1;
+    }
+}
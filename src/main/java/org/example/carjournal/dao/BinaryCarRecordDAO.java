@@ -0,0 +1,54 @@
+package org.example.carjournal.dao;
+
+import org.example.carjournal.model.CarRecord;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+/**
+ * Реализация DAO с компактным двоичным хранилищем записей.
+ * Формат описан в {@link BinaryRecordCodec}; по сравнению с XML файл
+ * значительно меньше и читается без разбора текста.
+ * Для перевода существующего журнала из XML используйте {@link RecordFormatConverter}.
+ */
+public class BinaryCarRecordDAO extends JournaledCarRecordDAO {
+    private static final String FILE_PATH = "car_records.bin";
+
+    public BinaryCarRecordDAO() {
+        this(FILE_PATH);
+    }
+
+    /**
+     * @param filePath путь к двоичному файлу со снимком записей
+     */
+    public BinaryCarRecordDAO(String filePath) {
+        super(filePath);
+        open();
+    }
+
+    @Override
+    protected void readSnapshot(Path path, Consumer<CarRecord> consumer) throws IOException {
+        BinaryRecordCodec.readFile(path, consumer);
+    }
+
+    @Override
+    protected void writeSnapshot(Path path, List<CarRecord> snapshot) throws IOException {
+        BinaryRecordCodec.writeFile(path, snapshot);
+    }
+
+    @Override
+    protected byte[] encode(CarRecord record) throws IOException {
+        return BinaryRecordCodec.encode(record);
+    }
+
+    @Override
+    protected CarRecord decode(byte[] payload) throws IOException {
+        return BinaryRecordCodec.decode(payload, BinaryRecordCodec.VERSION);
+    }
+
+    @Override
+    protected CarRecord decodeLegacy(byte[] payload) throws IOException {
+        return BinaryRecordCodec.decode(payload, BinaryRecordCodec.LEGACY_VERSION);
+    }
+}
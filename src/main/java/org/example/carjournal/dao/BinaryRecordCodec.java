@@ -0,0 +1,289 @@
+package org.example.carjournal.dao;
+
+import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.model.HistoryEntry;
+import org.example.carjournal.model.Priority;
+import org.example.carjournal.model.RecordStatus;
+import org.example.carjournal.model.RecordType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Компактный двоичный формат записей.
+ * <p>
+ * Файл: [магическое число][версия][словарь строк][количество записей][записи],
+ * где каждая запись предваряется своей длиной. Перечисления хранятся порядковыми
+ * номерами, даты - номером дня от эпохи, а повторяющиеся действия истории -
+ * индексами в словаре строк. Записи журнала кодируются тем же форматом,
+ * но строки истории пишутся в них напрямую, без словаря. Начиная с версии 2
+ * каждая запись заканчивается версией записи и идентификатором автомобиля.
+ * В файлах версии 1 и в журналах без контрольных сумм их может не быть,
+ * такие записи читаются с версией 0 и без автомобиля.
+ */
+final class BinaryRecordCodec {
+    private static final int MAGIC = 0x434A5242; // "CJRB"
+    static final byte VERSION = 2;
+    static final byte LEGACY_VERSION = 1;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    private static final RecordType[] TYPES = RecordType.values();
+    private static final RecordStatus[] STATUSES = RecordStatus.values();
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private BinaryRecordCodec() {
+    }
+
+    /**
+     * Записывает файл с записями
+     * @param path путь к файлу
+     * @param records записи для сохранения
+     */
+    static void writeFile(Path path, Collection<CarRecord> records) throws IOException {
+        // Словарь строится заранее, чтобы при чтении он был доступен до первой записи
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        for (CarRecord record : records) {
+            if (record.getHistory() != null) {
+                for (HistoryEntry entry : record.getHistory()) {
+                    dictionary.putIfAbsent(entry.getAction(), dictionary.size());
+                }
+            }
+        }
+
+        try (OutputStream file = Files.newOutputStream(path);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            writeVarInt(out, dictionary.size());
+            for (String action : dictionary.keySet()) {
+                writeString(out, action);
+            }
+
+            writeVarInt(out, records.size());
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+            DataOutputStream recordOut = new DataOutputStream(buffer);
+            for (CarRecord record : records) {
+                buffer.reset();
+                writeRecord(recordOut, record, dictionary);
+                writeVarInt(out, buffer.size());
+                buffer.writeTo(out);
+            }
+        }
+    }
+
+    /**
+     * Последовательно читает записи из файла
+     * @param path путь к файлу
+     * @param consumer получатель записей
+     * @throws IOException если файл поврежден; прочитанные до повреждения записи
+     *                     уже переданы получателю
+     */
+    static void readFile(Path path, Consumer<CarRecord> consumer) throws IOException {
+        try (InputStream file = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file, 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a binary records file: " + path);
+            }
+            byte version = in.readByte();
+            if (version != VERSION && version != LEGACY_VERSION) {
+                throw new IOException("Unsupported binary records version: " + version);
+            }
+
+            int dictionarySize = readVarInt(in);
+            List<String> dictionary = new ArrayList<>(dictionarySize);
+            for (int i = 0; i < dictionarySize; i++) {
+                dictionary.add(readString(in));
+            }
+
+            int count = readVarInt(in);
+            byte[] buffer = new byte[256];
+            for (int i = 0; i < count; i++) {
+                int length = readVarInt(in);
+                if (length > buffer.length) {
+                    buffer = new byte[Math.max(length, buffer.length * 2)];
+                }
+                in.readFully(buffer, 0, length);
+                consumer.accept(readRecord(new DataInputStream(
+                        new ByteArrayInputStream(buffer, 0, length)), dictionary, version));
+            }
+        } catch (EOFException e) {
+            throw new IOException("Binary records file is truncated", e);
+        } catch (RuntimeException e) {
+            throw new IOException("Binary records file is damaged", e);
+        }
+    }
+
+    /**
+     * Кодирует одну запись без словаря (для журнала)
+     */
+    static byte[] encode(CarRecord record) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        writeRecord(new DataOutputStream(buffer), record, null);
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Декодирует запись, закодированную {@link #encode(CarRecord)}
+     * @param payload данные записи журнала
+     * @param version версия формата, в котором запись была закодирована
+     */
+    static CarRecord decode(byte[] payload, byte version) throws IOException {
+        return readRecord(new DataInputStream(new ByteArrayInputStream(payload)), null, version);
+    }
+
+    static void writeRecord(DataOutput out, CarRecord record, Map<String, Integer> dictionary) throws IOException {
+        writeString(out, record.getId());
+        writeString(out, record.getTitle());
+        writeString(out, record.getDescription());
+        out.writeByte(ordinal(record.getType()));
+        out.writeByte(ordinal(record.getStatus()));
+        out.writeByte(ordinal(record.getPriority()));
+        out.writeDouble(record.getCost());
+        out.writeDouble(record.getMileage());
+        out.writeDouble(record.getFuelAmount());
+        out.writeDouble(record.getFuelPrice());
+        out.writeInt(epochDay(record.getDate()));
+        out.writeInt(epochDay(record.getDueDate()));
+
+        List<HistoryEntry> history = record.getHistory();
+        int historySize = history == null ? 0 : history.size();
+        writeVarInt(out, historySize);
+        for (int i = 0; i < historySize; i++) {
+            HistoryEntry entry = history.get(i);
+            out.writeInt(epochDay(entry.getDate()));
+            if (dictionary == null) {
+                writeString(out, entry.getAction());
+            } else {
+                writeVarInt(out, dictionary.get(entry.getAction()));
+            }
+        }
+        out.writeLong(record.getVersion());
+        writeString(out, record.getVehicleId());
+    }
+
+    static CarRecord readRecord(DataInputStream in, List<String> dictionary, byte version) throws IOException {
+        CarRecord record = new CarRecord();
+        record.setId(readString(in));
+        record.setTitle(readString(in));
+        record.setDescription(readString(in));
+        byte type = in.readByte();
+        byte status = in.readByte();
+        byte priority = in.readByte();
+        record.setType(type < 0 ? null : TYPES[type]);
+        record.setStatus(status < 0 ? null : STATUSES[status]);
+        record.setPriority(priority < 0 ? null : PRIORITIES[priority]);
+        record.setCost(in.readDouble());
+        record.setMileage(in.readDouble());
+        record.setFuelAmount(in.readDouble());
+        record.setFuelPrice(in.readDouble());
+        record.setDate(date(in.readInt()));
+        record.setDueDate(date(in.readInt()));
+
+        int historySize = readVarInt(in);
+        List<HistoryEntry> history = new ArrayList<>(historySize);
+        for (int i = 0; i < historySize; i++) {
+            LocalDate date = date(in.readInt());
+            String action = dictionary == null ? readString(in) : dictionary.get(readVarInt(in));
+            history.add(new HistoryEntry(date, action));
+        }
+        record.setHistory(history);
+        if (version == LEGACY_VERSION) {
+            // В версии 1 поля дописывались постепенно, и запись может закончиться раньше
+            if (in.available() > 0) {
+                record.setVersion(in.readLong());
+            }
+            if (in.available() > 0) {
+                record.setVehicleId(readString(in));
+            }
+        } else {
+            record.setVersion(in.readLong());
+            record.setVehicleId(readString(in));
+        }
+        return record;
+    }
+
+    static int ordinal(Enum<?> value) {
+        return value == null ? -1 : value.ordinal();
+    }
+
+    static int epochDay(LocalDate date) {
+        return date == null ? NO_DATE : (int) date.toEpochDay();
+    }
+
+    static LocalDate date(int epochDay) {
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    /**
+     * Пишет строку как длину в байтах + 1 (0 означает null) и байты UTF-8
+     */
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = readVarInt(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Пропускает строку, не декодируя ее
+     */
+    static void skipString(DataInput in) throws IOException {
+        int length = readVarInt(in) - 1;
+        if (length > 0) {
+            in.skipBytes(length);
+        }
+    }
+
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length integer");
+    }
+}
@@ -2,15 +2,131 @@ package org.example.carjournal.dao;
 
 
 import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.model.CarRecordSummary;
+import org.example.carjournal.model.RecordStatus;
+
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public interface CarRecordDAO {
     List<CarRecord> findAll();
     Optional<CarRecord> findById(String id);
     void save(CarRecord record);
+    /**
+     * Обновляет запись, если ее версия совпадает с сохраненной. Сохраненная запись
+     * получает следующую версию, переданная запись не меняется
+     * @param record запись с версией, на основе которой сделаны изменения
+     * @throws StaleRecordException если запись удалена или ее версия устарела
+     */
     void update(CarRecord record);
     void delete(String id);
-    List<CarRecord> findByStatus(String status);
-    List<CarRecord> findByType(String type);
+
+    /**
+     * Обновляет несколько записей за одну операцию сохранения
+     * @param records записи с обновленными данными
+     */
+    default void updateAll(Collection<CarRecord> records) {
+        records.forEach(this::update);
+    }
+
+    /**
+     * Находит записи с указанным статусом, срок выполнения которых наступил раньше даты
+     * @param status статус записей
+     * @param date граница срока выполнения (не включительно)
+     * @return список найденных записей
+     */
+    default List<CarRecord> findDueBefore(RecordStatus status, LocalDate date) {
+        return find(RecordQuery.builder()
+                .statuses(status)
+                .dueDateBetween(null, date.minusDays(1))
+                .build());
+    }
+
+    /**
+     * Выполняет запрос и выдает результаты по мере чтения потока. Реализация
+     * по умолчанию проверяет условия по списку всех записей; хранилища переопределяют ее,
+     * чтобы отбирать записи индексами и проверять поля, не разбирая записи целиком.
+     * Поток нужно дочитать до следующего изменения хранилища.
+     * @param query условия, порядок, ограничение количества и набор полей
+     * @return поток найденных записей
+     */
+    default Stream<CarRecord> stream(RecordQuery query) {
+        return query.orderAndLimit(findAll().stream().filter(query::matches));
+    }
+
+    /**
+     * Находит записи, удовлетворяющие всем условиям запроса
+     * @param query условия, порядок, ограничение количества и набор полей
+     * @return список найденных записей
+     */
+    default List<CarRecord> find(RecordQuery query) {
+        return stream(query).collect(Collectors.toList());
+    }
+
+    /**
+     * Находит записи одного автомобиля
+     * @param vehicleId идентификатор автомобиля
+     * @return список записей автомобиля
+     */
+    default List<CarRecord> findByVehicle(String vehicleId) {
+        return findAll().stream()
+                .filter(record -> vehicleId.equals(record.getVehicleId()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return количество записей в хранилище
+     */
+    default int count() {
+        return findAll().size();
+    }
+
+    /**
+     * Возвращает одну страницу записей в заданном порядке
+     * @param page смещение, размер и порядок страницы
+     * @return записи страницы (пустой список, если смещение за концом)
+     */
+    default List<CarRecord> findPage(PageRequest page) {
+        Stream<CarRecord> records = findAll().stream();
+        if (page.getOrder().comparator() != null) {
+            records = records.sorted(page.getOrder().comparator());
+        }
+        return records.skip(page.getOffset())
+                .limit(page.getLimit())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Возвращает одну страницу кратких представлений записей для списков.
+     * Хранилища, читающие записи с диска, переопределяют метод, чтобы не разбирать
+     * описание и историю записей
+     * @param page смещение, размер и порядок страницы
+     * @return представления записей страницы
+     */
+    default List<CarRecordSummary> findSummaryPage(PageRequest page) {
+        return findPage(page).stream()
+                .map(CarRecordSummary::of)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Возвращает future, который завершается, когда все выполненные до вызова
+     * изменения надежно сохранены. Реализации, сохраняющие изменения синхронно,
+     * возвращают уже завершенный future.
+     * @return future завершения записи
+     */
+    default CompletableFuture<Void> flush() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Сбрасывает несохраненные изменения и освобождает ресурсы хранилища
+     */
+    default void close() {
+    }
 }
\ No newline at end of file
@@ -0,0 +1,130 @@
+package org.example.carjournal.dao;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Однопоточный исполнитель операций записи с объединением (coalescing).
+ * Операции выполняются строго в порядке поступления в отдельном потоке;
+ * все операции, накопившиеся к моменту пробуждения потока, выполняются пачкой,
+ * после чего один раз вызывается действие сброса на диск. Каждая операция
+ * получает {@link CompletableFuture}, который завершается после этого сброса.
+ */
+class CoalescingWriter {
+    /**
+     * Операция записи, выполняемая в потоке писателя
+     */
+    interface Write {
+        void run() throws IOException;
+    }
+
+    private static final class Pending {
+        final Write write;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Pending(Write write) {
+            this.write = write;
+        }
+    }
+
+    private static final Write NO_OP = () -> { };
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Write flush;
+    private final Thread thread;
+    private volatile boolean closed;
+    private volatile Pending stopMarker;
+
+    /**
+     * @param name имя потока писателя
+     * @param flush действие, выполняемое один раз после каждой пачки операций
+     */
+    CoalescingWriter(String name, Write flush) {
+        this.flush = flush;
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Ставит операцию в очередь
+     * @param write операция записи
+     * @return future, завершающийся после выполнения операции и сброса на диск
+     */
+    CompletableFuture<Void> submit(Write write) {
+        if (closed) {
+            throw new IllegalStateException("Writer is closed");
+        }
+        Pending pending = new Pending(write);
+        queue.add(pending);
+        return pending.future;
+    }
+
+    /**
+     * @return future, завершающийся после сброса всех ранее поставленных операций
+     */
+    CompletableFuture<Void> flush() {
+        return submit(NO_OP);
+    }
+
+    /**
+     * Дожидается выполнения всех поставленных операций и останавливает поток
+     */
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        Pending stop = new Pending(NO_OP);
+        stopMarker = stop;
+        queue.add(stop);
+        stop.future.exceptionally(e -> null).join();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(batch);
+
+            List<Pending> written = new ArrayList<>(batch.size());
+            for (Pending pending : batch) {
+                try {
+                    pending.write.run();
+                    written.add(pending);
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Error writing records: " + e.getMessage());
+                    e.printStackTrace();
+                    pending.future.completeExceptionally(e);
+                }
+            }
+
+            try {
+                flush.run();
+                written.forEach(pending -> pending.future.complete(null));
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error flushing records: " + e.getMessage());
+                e.printStackTrace();
+                written.forEach(pending -> pending.future.completeExceptionally(e));
+            }
+
+            if (stopMarker != null && batch.contains(stopMarker)) {
+                return;
+            }
+            batch.clear();
+        }
+    }
+}
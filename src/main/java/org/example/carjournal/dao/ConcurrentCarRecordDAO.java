@@ -0,0 +1,248 @@
+package org.example.carjournal.dao;
+
+import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.model.CarRecordSummary;
+import org.example.carjournal.model.RecordStatus;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Потокобезопасная обертка над хранилищем записей.
+ * <p>
+ * Поиск по идентификатору выполняется без блокировок по {@link ConcurrentHashMap}.
+ * Изменения передаются исходному хранилищу под блокировкой записи, а выборки -
+ * под блокировкой чтения, поэтому читатели не блокируют друг друга.
+ * {@link #findAll()} возвращает неизменяемый снимок, который строится один раз
+ * после каждого изменения и разделяется всеми читателями (копирование при записи).
+ * Записи хранятся в собственных копиях: {@link #findById} возвращает копию,
+ * поэтому изменение полученной записи на месте не обходит проверку версии.
+ */
+public class ConcurrentCarRecordDAO implements CarRecordDAO {
+    private final CarRecordDAO delegate;
+    private final ConcurrentMap<String, CarRecord> records = new ConcurrentHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * Снимок всех записей или null, если после последнего изменения его еще не строили
+     */
+    private volatile List<CarRecord> snapshot;
+
+    /**
+     * @param delegate исходное хранилище; после создания обертки к нему
+     *                 нельзя обращаться напрямую
+     */
+    public ConcurrentCarRecordDAO(CarRecordDAO delegate) {
+        this.delegate = delegate;
+        for (CarRecord record : delegate.findAll()) {
+            records.put(record.getId(), record.copy());
+        }
+    }
+
+    /**
+     * Возвращает снимок всех записей на момент вызова. Снимок не меняется
+     * при последующих изменениях хранилища и не может быть изменен вызывающим.
+     * @return неизменяемый список записей
+     */
+    @Override
+    public List<CarRecord> findAll() {
+        List<CarRecord> current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        lock.readLock().lock();
+        try {
+            current = snapshot;
+            if (current == null) {
+                current = Collections.unmodifiableList(new ArrayList<>(delegate.findAll()));
+                snapshot = current;
+            }
+            return current;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<CarRecord> findById(String id) {
+        return id == null ? Optional.empty() : Optional.ofNullable(records.get(id)).map(CarRecord::copy);
+    }
+
+    @Override
+    public void save(CarRecord record) {
+        lock.writeLock().lock();
+        try {
+            delegate.save(record);
+            records.put(record.getId(), record.copy());
+            snapshot = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void update(CarRecord record) {
+        lock.writeLock().lock();
+        try {
+            delegate.update(record);
+            records.put(record.getId(), nextVersion(record));
+            snapshot = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void updateAll(Collection<CarRecord> updated) {
+        lock.writeLock().lock();
+        try {
+            delegate.updateAll(updated);
+            for (CarRecord record : updated) {
+                records.put(record.getId(), nextVersion(record));
+            }
+            snapshot = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Копия сохраненной записи со следующей версией: хранилище увеличивает
+     * версию своей копии, не меняя переданную запись
+     */
+    private static CarRecord nextVersion(CarRecord record) {
+        CarRecord stored = record.copy();
+        stored.setVersion(record.getVersion() + 1);
+        return stored;
+    }
+
+    /**
+     * Атомарно заменяет запись, если ее версия в хранилище совпадает с версией ожидаемой записи.
+     * @param expected запись, прочитанная вызывающим
+     * @param replacement новые данные записи с тем же идентификатором и версией
+     * @return true, если запись заменена; false, если ее успели изменить или удалить
+     */
+    public boolean compareAndSet(CarRecord expected, CarRecord replacement) {
+        if (!expected.getId().equals(replacement.getId())) {
+            throw new IllegalArgumentException("Record ids differ: " + expected.getId() + ", " + replacement.getId());
+        }
+        lock.writeLock().lock();
+        try {
+            CarRecord stored = records.get(expected.getId());
+            if (stored == null || stored.getVersion() != expected.getVersion()) {
+                return false;
+            }
+            delegate.update(replacement);
+            records.put(replacement.getId(), nextVersion(replacement));
+            snapshot = null;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(String id) {
+        lock.writeLock().lock();
+        try {
+            delegate.delete(id);
+            records.remove(id);
+            snapshot = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<CarRecord> findDueBefore(RecordStatus status, LocalDate date) {
+        lock.readLock().lock();
+        try {
+            return delegate.findDueBefore(status, date);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Результаты отбираются целиком под блокировкой чтения, а поток выдается
+     * уже после ее снятия, чтобы потребитель не задерживал пишущие потоки
+     */
+    @Override
+    public Stream<CarRecord> stream(RecordQuery query) {
+        return find(query).stream();
+    }
+
+    @Override
+    public List<CarRecord> find(RecordQuery query) {
+        lock.readLock().lock();
+        try {
+            return delegate.find(query);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<CarRecord> findByVehicle(String vehicleId) {
+        lock.readLock().lock();
+        try {
+            return delegate.findByVehicle(vehicleId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int count() {
+        return records.size();
+    }
+
+    @Override
+    public List<CarRecord> findPage(PageRequest page) {
+        lock.readLock().lock();
+        try {
+            return delegate.findPage(page);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<CarRecordSummary> findSummaryPage(PageRequest page) {
+        lock.readLock().lock();
+        try {
+            return delegate.findSummaryPage(page);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> flush() {
+        lock.readLock().lock();
+        try {
+            return delegate.flush();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            delegate.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package org.example.carjournal.dao;
+
+import org.example.carjournal.model.HistoryEntry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * История изменений записей, хранящаяся отдельно от самих записей.
+ * <p>
+ * Каждое изменение дописывается в конец файла ({@link RecordJournal}), поэтому
+ * сохранение записи не переписывает ее историю. Тексты действий кодируются словарем:
+ * новое действие записывается в файл один раз, а записи истории ссылаются на его номер
+ * ("Запись обновлена" занимает несколько байт независимо от количества обновлений).
+ * В памяти запись истории - одно число (день и номер действия).
+ * <p>
+ * Для каждой записи хранится не больше {@code retention} последних записей истории,
+ * более старые отбрасываются. Когда отброшенные и удаленные записи занимают большую
+ * часть файла, он переписывается заново (через временный файл и атомарную замену).
+ * Изменения сразу передаются файловой системе, а синхронизация с диском выполняется
+ * в отдельном потоке по {@link #flush()} (несколько ожидающих сброса объединяются
+ * в один fsync), а также при компактизации, {@link #sync()} и {@link #close()}.
+ */
+public class HistoryLog implements AutoCloseable {
+    /**
+     * Количество хранимых записей истории на одну запись по умолчанию
+     */
+    public static final int DEFAULT_RETENTION = 100;
+    /**
+     * Количество лишних записей в файле, после которого выполняется компактизация
+     */
+    private static final int COMPACTION_THRESHOLD = 4096;
+
+    /**
+     * История одной записи: день и номер действия, упакованные в long, от старых к новым
+     */
+    private static final class Entries {
+        long[] packed = new long[2];
+        int size;
+
+        /**
+         * @return true, если при добавлении отброшена самая старая запись
+         */
+        boolean add(long entry, int retention) {
+            boolean dropped = false;
+            if (size == retention) {
+                System.arraycopy(packed, 1, packed, 0, size - 1);
+                size--;
+                dropped = true;
+            }
+            if (size == packed.length) {
+                packed = Arrays.copyOf(packed, Math.min(retention, size * 2));
+            }
+            packed[size++] = entry;
+            return dropped;
+        }
+    }
+
+    private final Path path;
+    private final int retention;
+    private final Map<String, Entries> entries = new LinkedHashMap<>();
+    private final List<String> actions = new ArrayList<>();
+    private final Map<String, Integer> actionCodes = new HashMap<>();
+    private final CoalescingWriter writer;
+    private RecordJournal journal;
+    /**
+     * Количество записей истории в памяти
+     */
+    private int liveEntries;
+    /**
+     * Количество записей истории и удалений в файле
+     */
+    private int fileEntries;
+
+    /**
+     * @param path файл истории; создается, если его нет
+     * @param retention количество хранимых записей истории на одну запись
+     */
+    public HistoryLog(Path path, int retention) {
+        if (retention <= 0) {
+            throw new IllegalArgumentException("Retention must be positive: " + retention);
+        }
+        this.path = path;
+        this.retention = retention;
+        try {
+            int replayed = RecordJournal.replay(path, this::apply);
+            journal = RecordJournal.open(path);
+            System.out.println("Loaded " + replayed + " history entries for " + entries.size()
+                    + " records from: " + path.toAbsolutePath());
+            if (fileEntries - liveEntries > COMPACTION_THRESHOLD) {
+                compact();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open history log " + path, e);
+        }
+        writer = new CoalescingWriter("car-history-writer", this::force);
+    }
+
+    /**
+     * Добавляет запись в историю
+     * @param recordId идентификатор записи
+     * @param entry дата и действие
+     */
+    public synchronized void append(String recordId, HistoryEntry entry) {
+        Integer code = actionCodes.get(entry.getAction());
+        try {
+            if (code == null) {
+                write(RecordJournal.HISTORY_ACTION, encodeString(entry.getAction()));
+                code = define(entry.getAction());
+            }
+            int day = BinaryRecordCodec.epochDay(entry.getDate());
+            write(RecordJournal.HISTORY_ENTRY, encodeEntry(recordId, day, code));
+            add(recordId, day, code);
+            if (fileEntries - liveEntries > Math.max(COMPACTION_THRESHOLD, liveEntries)) {
+                compact();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to history log " + path, e);
+        }
+    }
+
+    /**
+     * @param recordId идентификатор записи
+     * @return история записи от старых изменений к новым (пустой список, если истории нет)
+     */
+    public synchronized List<HistoryEntry> history(String recordId) {
+        Entries recorded = entries.get(recordId);
+        if (recorded == null) {
+            return new ArrayList<>();
+        }
+        List<HistoryEntry> result = new ArrayList<>(recorded.size);
+        for (int i = 0; i < recorded.size; i++) {
+            long entry = recorded.packed[i];
+            result.add(new HistoryEntry(BinaryRecordCodec.date((int) (entry >> 32)), actions.get((int) entry)));
+        }
+        return result;
+    }
+
+    /**
+     * @return true, если у записи есть история
+     */
+    public synchronized boolean contains(String recordId) {
+        return entries.containsKey(recordId);
+    }
+
+    /**
+     * Удаляет историю записи
+     * @param recordId идентификатор записи
+     */
+    public synchronized void remove(String recordId) {
+        if (!entries.containsKey(recordId)) {
+            return;
+        }
+        try {
+            write(RecordJournal.HISTORY_CLEAR, encodeString(recordId));
+            liveEntries -= entries.remove(recordId).size;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to history log " + path, e);
+        }
+    }
+
+    /**
+     * Принудительно сбрасывает дописанные изменения на диск
+     */
+    public synchronized void sync() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot sync history log " + path, e);
+        }
+    }
+
+    /**
+     * Сбрасывает дописанные изменения на диск в потоке писателя, не блокируя
+     * вызывающий поток и дозапись новых изменений
+     * @return future, завершающийся после сброса на диск всех ранее добавленных изменений
+     */
+    public CompletableFuture<Void> flush() {
+        return writer.flush();
+    }
+
+    /**
+     * Сброс на диск, выполняемый потоком писателя; fsync идет без удержания блокировки
+     */
+    private void force() throws IOException {
+        RecordJournal current;
+        synchronized (this) {
+            current = journal;
+        }
+        if (current == null) {
+            return;
+        }
+        try {
+            current.force();
+        } catch (ClosedChannelException e) {
+            // Файл переписан компактизацией или закрыт, и его содержимое уже сброшено на диск
+        }
+    }
+
+    /**
+     * @return количество записей истории и удалений в файле (для тестов)
+     */
+    synchronized int fileEntries() {
+        return fileEntries;
+    }
+
+    private int define(String action) {
+        int code = actions.size();
+        actions.add(action);
+        actionCodes.put(action, code);
+        return code;
+    }
+
+    private void add(String recordId, int day, int action) {
+        Entries recorded = entries.computeIfAbsent(recordId, key -> new Entries());
+        if (!recorded.add(((long) day << 32) | action, retention)) {
+            liveEntries++;
+        }
+    }
+
+    /**
+     * Применяет операцию файла при загрузке
+     */
+    private void apply(byte operation, byte[] payload) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            switch (operation) {
+                case RecordJournal.HISTORY_ACTION:
+                    define(BinaryRecordCodec.readString(in));
+                    break;
+                case RecordJournal.HISTORY_ENTRY:
+                    String recordId = BinaryRecordCodec.readString(in);
+                    int day = in.readInt();
+                    add(recordId, day, BinaryRecordCodec.readVarInt(in));
+                    fileEntries++;
+                    break;
+                case RecordJournal.HISTORY_CLEAR:
+                    Entries removed = entries.remove(BinaryRecordCodec.readString(in));
+                    if (removed != null) {
+                        liveEntries -= removed.size;
+                    }
+                    fileEntries++;
+                    break;
+                default:
+                    System.err.println("Skipping unknown history operation " + operation);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Damaged history log " + path, e);
+        }
+    }
+
+    /**
+     * Дописывает операцию в файл; после закрытия журнала ничего не пишет
+     */
+    private void write(byte operation, byte[] payload) throws IOException {
+        if (journal == null) {
+            return;
+        }
+        journal.append(operation, payload);
+        if (operation != RecordJournal.HISTORY_ACTION) {
+            fileEntries++;
+        }
+    }
+
+    /**
+     * Переписывает файл, оставляя только хранимые записи истории и используемые действия.
+     * Номера действий при этом назначаются заново
+     */
+    private void compact() throws IOException {
+        if (journal == null) {
+            return;
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.deleteIfExists(temp);
+        int[] remap = new int[actions.size()];
+        Arrays.fill(remap, -1);
+        List<String> usedActions = new ArrayList<>();
+        try (RecordJournal compacted = RecordJournal.open(temp)) {
+            for (Map.Entry<String, Entries> record : entries.entrySet()) {
+                Entries recorded = record.getValue();
+                for (int i = 0; i < recorded.size; i++) {
+                    int action = (int) recorded.packed[i];
+                    if (remap[action] < 0) {
+                        remap[action] = usedActions.size();
+                        usedActions.add(actions.get(action));
+                        compacted.append(RecordJournal.HISTORY_ACTION, encodeString(actions.get(action)));
+                    }
+                    compacted.append(RecordJournal.HISTORY_ENTRY,
+                            encodeEntry(record.getKey(), (int) (recorded.packed[i] >> 32), remap[action]));
+                }
+            }
+        }
+
+        journal.close();
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        RecordJournal.syncDirectory(path);
+        journal = RecordJournal.open(path);
+        System.out.println("Compacted history log: " + fileEntries + " -> " + liveEntries + " entries");
+
+        // Номера действий в памяти меняются только после успешной замены файла
+        for (Entries recorded : entries.values()) {
+            for (int i = 0; i < recorded.size; i++) {
+                recorded.packed[i] = (recorded.packed[i] & 0xFFFFFFFF00000000L) | remap[(int) recorded.packed[i]];
+            }
+        }
+        actions.clear();
+        actionCodes.clear();
+        usedActions.forEach(this::define);
+        fileEntries = liveEntries;
+    }
+
+    private static byte[] encodeString(String value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        BinaryRecordCodec.writeString(out, value);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeEntry(String recordId, int day, int action) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        BinaryRecordCodec.writeString(out, recordId);
+        out.writeInt(day);
+        BinaryRecordCodec.writeVarInt(out, action);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Сбрасывает изменения на диск и закрывает файл; если большая часть файла
+     * занята отброшенными записями, он предварительно переписывается
+     */
+    @Override
+    public void close() {
+        // Поток писателя сам берет блокировку, поэтому его останавливаем до нее
+        writer.close();
+        synchronized (this) {
+            if (journal == null) {
+                return;
+            }
+            try {
+                if (fileEntries > 2 * liveEntries) {
+                    compact();
+                }
+                journal.close();
+                journal = null;
+            } catch (IOException e) {
+                System.err.println("Error closing history log: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,510 @@
+package org.example.carjournal.dao;
+
+import org.example.carjournal.model.CarRecord;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+/**
+ * Базовая реализация DAO с файлом-снимком (snapshot) и журналом изменений.
+ * Изменения не переписывают снимок целиком, а дописываются в журнал
+ * ({@link RecordJournal}), поэтому каждая мутация стоит O(1).
+ * Индекс в памяти обновляется сразу в вызывающем потоке, а запись журнала
+ * выполняет отдельный поток ({@link CoalescingWriter}), объединяя серии
+ * изменений в один fsync; {@link #flush()} позволяет дождаться сохранения.
+ * Когда журнал разрастается, фоновая компактизация сворачивает его в новый снимок.
+ * <p>
+ * Снимок заменяется атомарно: новый файл пишется рядом, сбрасывается на диск
+ * и переименовывается поверх старого, а прежний снимок остается как резервный
+ * ({@code .bak}) вместе с журналами, которые ведут от него к текущему.
+ * При запуске состояние восстанавливается из снимка и еще не свернутых журналов,
+ * поэтому время запуска ограничено порогом компактизации, а не всей историей изменений.
+ * Если текущий снимок поврежден, состояние восстанавливается из резервного снимка
+ * и сохраненных журналов.
+ * <p>
+ * Наследники определяют только формат снимка и записей журнала
+ * и должны вызвать {@link #open()} в конце своего конструктора.
+ */
+abstract class JournaledCarRecordDAO implements CarRecordDAO {
+    private static final String JOURNAL_SUFFIX = ".journal.";
+    private static final String BACKUP_SUFFIX = ".bak";
+    private static final int COMPACTION_THRESHOLD = 1000;
+
+    private final Path snapshotPath;
+    private final Path backupPath;
+    private final ExecutorService compactionExecutor;
+    private RecordIndex records;
+    private CoalescingWriter writer;
+    // Журнал используется только потоком писателя
+    private RecordJournal journal;
+    private long journalGeneration;
+    private int journaledEntries;
+    private Future<?> compaction;
+    // Текущий снимок поврежден и не должен заменять резервный
+    private boolean snapshotDamaged;
+
+    /**
+     * @param filePath путь к файлу со снимком записей
+     */
+    JournaledCarRecordDAO(String filePath) {
+        this.snapshotPath = Path.of(filePath);
+        this.backupPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + BACKUP_SUFFIX);
+        this.compactionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "car-records-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    /**
+     * Читает снимок, передавая каждую прочитанную запись получателю
+     * @param path путь к файлу снимка
+     * @param consumer получатель записей
+     * @throws IOException если файл поврежден; записи, прочитанные до места
+     *                     повреждения, к этому моменту уже переданы получателю
+     */
+    protected abstract void readSnapshot(Path path, Consumer<CarRecord> consumer) throws IOException;
+    /**
+     * Записывает снимок в указанный файл
+     * @param path путь к файлу
+     * @param snapshot записи для сохранения
+     */
+    protected abstract void writeSnapshot(Path path, List<CarRecord> snapshot) throws IOException;
+    /**
+     * Сериализует запись для журнала
+     */
+    protected abstract byte[] encode(CarRecord record) throws IOException;
+    /**
+     * Восстанавливает запись из данных журнала
+     */
+    protected abstract CarRecord decode(byte[] payload) throws IOException;
+    /**
+     * Восстанавливает запись из журнала без контрольных сумм, записанного
+     * до появления текущего формата записей
+     */
+    protected CarRecord decodeLegacy(byte[] payload) throws IOException {
+        return decode(payload);
+    }
+    /**
+     * Загружает снимок и журналы и открывает журнал для новых изменений
+     */
+    protected final void open() {
+        long started = System.nanoTime();
+        this.records = new RecordIndex();
+        boolean recovered = loadRecords();
+        if (!recovered) {
+            replayJournals(findJournals(""));
+        }
+        TreeMap<Long, Path> journals = findJournals("");
+        journals.putAll(findJournals(BACKUP_SUFFIX));
+        journalGeneration = journals.isEmpty() ? 0 : journals.lastKey();
+        journal = openJournal(++journalGeneration);
+        writer = new CoalescingWriter("car-records-writer", () -> journal.sync());
+        System.out.println("Opened " + records.size() + " records (" + journaledEntries
+                + " journal entries replayed) in " + (System.nanoTime() - started) / 1_000_000 + " ms");
+    }
+    /**
+     * Загружает записи из файла снимка.
+     * Если файл поврежден, он копируется рядом для ручного восстановления, а состояние
+     * восстанавливается из резервного снимка; если восстановить его не удалось,
+     * сохраняются записи, прочитанные до места повреждения.
+     * @return true, если состояние восстановлено из резервного снимка вместе с журналами
+     */
+    private boolean loadRecords() {
+        if (!Files.exists(snapshotPath) || snapshotPath.toFile().length() == 0) {
+            // Снимка может не быть после сбоя между переименованиями файлов
+            if (recoverFromBackup()) {
+                return true;
+            }
+            System.out.println("No existing records file found, starting with empty list.");
+            return false;
+        }
+
+        try {
+            System.out.println("Loading records from: " + snapshotPath.toAbsolutePath());
+            readSnapshot(snapshotPath, records::put);
+            System.out.println("Successfully loaded " + records.size() + " records");
+            return false;
+        } catch (IOException e) {
+            System.err.println("Error loading records after " + records.size() + " records: " + e.getMessage());
+            backupDamagedSnapshot();
+            snapshotDamaged = true;
+        }
+        return recoverFromBackup();
+    }
+    /**
+     * Восстанавливает состояние из резервного снимка и всех журналов после него.
+     * Если резервный снимок тоже поврежден, уже загруженные записи не меняются
+     * @return true, если резервный снимок прочитан полностью
+     */
+    private boolean recoverFromBackup() {
+        if (!Files.exists(backupPath)) {
+            return false;
+        }
+        RecordIndex index = new RecordIndex();
+        try {
+            System.out.println("Recovering records from previous snapshot: " + backupPath.toAbsolutePath());
+            readSnapshot(backupPath, index::put);
+        } catch (IOException e) {
+            System.err.println("Previous snapshot is damaged too: " + e.getMessage());
+            return false;
+        }
+        records = index;
+        TreeMap<Long, Path> journals = findJournals(BACKUP_SUFFIX);
+        journals.putAll(findJournals(""));
+        replayJournals(journals);
+        System.out.println("Recovered " + records.size() + " records from previous snapshot");
+        return true;
+    }
+    /**
+     * Сохраняет копию поврежденного снимка, чтобы последующая
+     * компактизация не уничтожила невосстановленные данные
+     */
+    private void backupDamagedSnapshot() {
+        Path damagedPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".corrupt");
+        try {
+            Files.copy(snapshotPath, damagedPath, StandardCopyOption.REPLACE_EXISTING);
+            System.err.println("Damaged records file copied to: " + damagedPath.toAbsolutePath());
+        } catch (IOException e) {
+            System.err.println("Error backing up damaged records file: " + e.getMessage());
+        }
+    }
+    /**
+     * Воспроизводит поверх загруженного снимка журналы в порядке поколений.
+     * Операции журнала идемпотентны, поэтому повторное применение уже
+     * свернутого в снимок журнала не искажает данные.
+     */
+    private void replayJournals(TreeMap<Long, Path> journals) {
+        for (Path path : journals.values()) {
+            try {
+                boolean legacy = !RecordJournal.hasChecksums(path);
+                journaledEntries += RecordJournal.replay(path,
+                        (operation, payload) -> applyJournalEntry(operation, payload, legacy));
+            } catch (IOException e) {
+                System.err.println("Error replaying journal " + path + ": " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+        if (journaledEntries > 0) {
+            System.out.println("Replayed " + journaledEntries + " journal entries");
+        }
+    }
+
+    private void applyJournalEntry(byte operation, byte[] payload, boolean legacy) {
+        if (operation == RecordJournal.DELETE) {
+            records.remove(new String(payload, StandardCharsets.UTF_8));
+            return;
+        }
+        try {
+            records.put(legacy ? decodeLegacy(payload) : decode(payload));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Skipping unreadable journal entry: " + e);
+        }
+    }
+
+    /**
+     * Открывает журнал указанного поколения для дозаписи изменений
+     * @throws UncheckedIOException если журнал не удалось открыть: без него
+     *                              изменения нельзя сохранить
+     */
+    private RecordJournal openJournal(long generation) {
+        Path path = journalPath(generation);
+        try {
+            return RecordJournal.open(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open journal " + path, e);
+        }
+    }
+
+    private Path journalPath(long generation) {
+        return snapshotPath.resolveSibling(snapshotPath.getFileName() + JOURNAL_SUFFIX + generation);
+    }
+    /**
+     * Находит файлы журналов рядом со снимком
+     * @param suffix пустая строка для текущих журналов или {@link #BACKUP_SUFFIX}
+     *               для журналов, сохраненных вместе с резервным снимком
+     * @return журналы, упорядоченные по номеру поколения
+     */
+    private TreeMap<Long, Path> findJournals(String suffix) {
+        TreeMap<Long, Path> journals = new TreeMap<>();
+        Path directory = snapshotPath.toAbsolutePath().getParent();
+        String prefix = snapshotPath.getFileName() + JOURNAL_SUFFIX;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                try {
+                    journals.put(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())), path);
+                } catch (NumberFormatException ignored) {
+                    // Посторонний файл с похожим именем
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error listing journals: " + e.getMessage());
+        }
+        return journals;
+    }
+    /**
+     * Атомарно заменяет файл снимка: запись идет во временный файл, который
+     * сбрасывается на диск и переименовывается поверх снимка. Прежний снимок
+     * становится резервным, а журналы, свернутые в новый снимок, сохраняются
+     * при нем до следующей замены
+     * @param snapshot записи для сохранения
+     * @param coveredGeneration последнее поколение журнала, вошедшее в снимок
+     * @return true, если снимок успешно записан
+     */
+    private boolean replaceSnapshot(List<CarRecord> snapshot, long coveredGeneration) {
+        try {
+            Path tempPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+            System.out.println("Saving " + snapshot.size() + " records to: " + snapshotPath.toAbsolutePath());
+
+            writeSnapshot(tempPath, snapshot);
+            RecordJournal.syncFile(tempPath);
+            boolean rotated = Files.exists(snapshotPath) && !snapshotDamaged;
+            if (rotated) {
+                Files.move(snapshotPath, backupPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            Files.move(tempPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            RecordJournal.syncDirectory(snapshotPath);
+            snapshotDamaged = false;
+
+            System.out.println("Records saved successfully.");
+            if (rotated) {
+                deleteJournals(findJournals(BACKUP_SUFFIX).values());
+            }
+            retireJournals(coveredGeneration);
+            return true;
+
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error saving records: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+    /**
+     * Убирает журналы, свернутые в снимок: если есть резервный снимок, они
+     * переименовываются в журналы восстановления, иначе удаляются
+     */
+    private void retireJournals(long upToGeneration) {
+        Collection<Path> covered = findJournals("").headMap(upToGeneration, true).values();
+        if (!Files.exists(backupPath)) {
+            deleteJournals(covered);
+            return;
+        }
+        for (Path path : covered) {
+            try {
+                Files.move(path, path.resolveSibling(path.getFileName() + BACKUP_SUFFIX),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                System.err.println("Error retiring journal " + path + ": " + e.getMessage());
+            }
+        }
+    }
+    /**
+     * Ставит операцию в очередь записи журнала и при необходимости запускает компактизацию
+     */
+    private void appendToJournal(RecordJournal.Write write, int entries) {
+        writer.submit(() -> write.appendTo(journal));
+        journaledEntries += entries;
+        if (journaledEntries >= COMPACTION_THRESHOLD && (compaction == null || compaction.isDone())) {
+            compaction = rotateJournal();
+        }
+    }
+    /**
+     * Переключает запись на журнал следующего поколения и сворачивает состояние
+     * на момент переключения в снимок, после чего удаляет покрытые им журналы.
+     * Переключение выполняется потоком писателя в общем порядке операций,
+     * поэтому граница снимка совпадает с границей журналов. Если новый журнал
+     * открыть не удалось, запись продолжается в текущий, а компактизация пропускается.
+     */
+    private Future<?> rotateJournal() {
+        long compactedGeneration = journalGeneration;
+        long nextGeneration = ++journalGeneration;
+        journaledEntries = 0;
+
+        List<CarRecord> snapshot = new ArrayList<>(records.all());
+        return writer.submit(() -> {
+            RecordJournal previous = journal;
+            journal = RecordJournal.open(journalPath(nextGeneration));
+            previous.close();
+        }).thenRunAsync(() -> {
+            replaceSnapshot(snapshot, compactedGeneration);
+        }, compactionExecutor);
+    }
+
+    private void deleteJournals(Collection<Path> journals) {
+        for (Path path : journals) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                System.err.println("Error deleting journal " + path + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private byte[] serialize(CarRecord record) {
+        try {
+            return encode(record);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot serialize record " + record.getId(), e);
+        }
+    }
+
+    /**
+     * Находит все записи в хранилище
+     * @return копии всех записей
+     */
+    @Override
+    public List<CarRecord> findAll() {
+        List<CarRecord> result = new ArrayList<>(records.size());
+        for (CarRecord record : records.all()) {
+            result.add(record.copy());
+        }
+        return result;
+    }
+    /**
+     * Находит запись по идентификатору. Возвращается копия: изменения
+     * сохраненной записи на месте обошли бы проверку версии при обновлении
+     * @param id идентификатор записи
+     * @return Optional с копией найденной записи
+     */
+    @Override
+    public Optional<CarRecord> findById(String id) {
+        return Optional.ofNullable(records.get(id)).map(CarRecord::copy);
+    }
+    /**
+     * Сохраняет новую запись в хранилище
+     * @param record объект записи для сохранения
+     */
+    @Override
+    public void save(CarRecord record) {
+        if (record.getId() == null) {
+            record.setId(java.util.UUID.randomUUID().toString());
+        }
+
+        // Убедимся, что дата установлена
+        if (record.getDate() == null) {
+            record.setDate(java.time.LocalDate.now());
+        }
+
+        CarRecord stored = record.copy();
+        records.put(stored);
+        byte[] payload = serialize(stored);
+        appendToJournal(journal -> journal.append(RecordJournal.UPSERT, payload), 1);
+    }
+
+    /**
+     * Обновляет запись, если она не изменялась с момента чтения.
+     * Следующую версию получает сохраненная копия, переданная запись не меняется
+     * @param record запись с версией, на основе которой сделаны изменения
+     * @throws StaleRecordException если запись удалена или ее версия устарела
+     */
+    @Override
+    public void update(CarRecord record) {
+        StaleRecordException.check(records.get(record.getId()), record);
+        CarRecord stored = record.copy();
+        stored.setVersion(record.getVersion() + 1);
+        records.put(stored);
+        byte[] payload = serialize(stored);
+        appendToJournal(journal -> journal.append(RecordJournal.UPSERT, payload), 1);
+    }
+
+    /**
+     * Обновляет пачку записей одним проходом: все изменения попадают
+     * в журнал одной операцией записи. Версии проверяются до изменений,
+     * поэтому при конфликте не применяется ни одно обновление
+     * @param updated записи с обновленными данными
+     * @throws StaleRecordException если хотя бы одна запись удалена или устарела
+     */
+    @Override
+    public void updateAll(Collection<CarRecord> updated) {
+        if (updated.isEmpty()) {
+            return;
+        }
+        for (CarRecord record : updated) {
+            StaleRecordException.check(records.get(record.getId()), record);
+        }
+
+        List<byte[]> payloads = new ArrayList<>(updated.size());
+        for (CarRecord record : updated) {
+            CarRecord stored = record.copy();
+            stored.setVersion(record.getVersion() + 1);
+            records.put(stored);
+            payloads.add(serialize(stored));
+        }
+
+        appendToJournal(journal -> journal.appendBatch(RecordJournal.UPSERT, payloads), payloads.size());
+    }
+
+    @Override
+    public void delete(String id) {
+        records.remove(id);
+        byte[] payload = id.getBytes(StandardCharsets.UTF_8);
+        appendToJournal(journal -> journal.append(RecordJournal.DELETE, payload), 1);
+    }
+
+    /**
+     * Выполняет запрос по индексам в памяти и возвращает копии записей
+     * со всеми полями независимо от набора полей запроса
+     */
+    @Override
+    public Stream<CarRecord> stream(RecordQuery query) {
+        return records.stream(query).map(CarRecord::copy);
+    }
+    @Override
+    public int count() {
+        return records.size();
+    }
+    @Override
+    public List<CarRecord> findPage(PageRequest page) {
+        List<CarRecord> result = records.page(page.getOrder(), page.getOffset(), page.getLimit());
+        result.replaceAll(CarRecord::copy);
+        return result;
+    }
+    @Override
+    public CompletableFuture<Void> flush() {
+        return writer.flush();
+    }
+    /**
+     * Дожидается записи журнала и фоновой компактизации, сворачивает
+     * оставшиеся журналы в снимок и закрывает хранилище
+     */
+    @Override
+    public void close() {
+        writer.close();
+        compactionExecutor.shutdown();
+        try {
+            compactionExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.err.println("Error closing journal: " + e.getMessage());
+            e.printStackTrace();
+        }
+        boolean dirty = journaledEntries > 0 || snapshotDamaged
+                || !findJournals("").headMap(journalGeneration).isEmpty();
+        if (dirty) {
+            replaceSnapshot(new ArrayList<>(records.all()), journalGeneration);
+        } else {
+            deleteJournals(findJournals("").values());
+        }
+    }
+}
@@ -0,0 +1,640 @@
+package org.example.carjournal.dao;
+
+import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.model.CarRecordSummary;
+import org.example.carjournal.model.HistoryEntry;
+import org.example.carjournal.model.Priority;
+import org.example.carjournal.model.RecordStatus;
+import org.example.carjournal.model.RecordType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import sun.misc.Unsafe;
+/**
+ * Реализация DAO поверх файла, отображенного в память ({@link FileChannel#map}).
+ * <p>
+ * Записи не загружаются в кучу: в памяти хранится только таблица смещений
+ * "id -> позиция в файле", а {@link #findById} и {@link #findAll()} читают записи
+ * прямо из отображения. Числовые поля, статус, тип и даты лежат по фиксированным
+ * смещениям внутри записи, поэтому фильтрация по ним не требует разбора строк.
+ * <p>
+ * Формат файла: заголовок [магическое число][версия][конец данных], затем слоты
+ * [длина][флаг][тип][статус][приоритет][стоимость][пробег][топливо][цена топлива]
+ * [дата][срок][версия записи][id][название][описание][история][автомобиль]. Обновление дописывает
+ * новый слот и помечает старый удаленным; место удаленных слотов освобождается при закрытии.
+ * Обновление принимается, только если версия записи совпадает с сохраненной
+ * (см. {@link StaleRecordException}).
+ * Размер отображения ограничен 2 ГБ.
+ */
+public class MappedCarRecordDAO implements CarRecordDAO {
+    private static final String FILE_PATH = "car_records.dat";
+    private static final int MAGIC = 0x434A524D; // "CJRM"
+    private static final int VERSION = 3;
+    /**
+     * Версия без идентификатора автомобиля в конце слота; такие файлы читаются
+     * (автомобиль не задан) и при открытии помечаются текущей версией
+     */
+    private static final int VERSION_WITHOUT_VEHICLE = 2;
+    private static final int HEADER_SIZE = 16;
+    private static final int END_OFFSET = 8;
+    private static final int INITIAL_CAPACITY = 1 << 20;
+
+    // Смещения полей относительно начала слота
+    private static final int FLAG = 4;
+    private static final int TYPE = 5;
+    private static final int STATUS = 6;
+    private static final int PRIORITY = 7;
+    private static final int COST = 8;
+    private static final int MILEAGE = 16;
+    private static final int FUEL_AMOUNT = 24;
+    private static final int FUEL_PRICE = 32;
+    private static final int DATE = 40;
+    private static final int DUE_DATE = 44;
+    private static final int RECORD_VERSION = 48;
+    private static final int VARIABLE_PART = 56;
+
+    private static final byte LIVE = 1;
+    private static final byte DELETED = 0;
+    private static final RecordType[] TYPES = RecordType.values();
+    private static final RecordStatus[] STATUSES = RecordStatus.values();
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private final Path path;
+    private final Map<String, Integer> offsets = new LinkedHashMap<>();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int end;
+    private long garbageBytes;
+
+    public MappedCarRecordDAO() {
+        this(FILE_PATH);
+    }
+
+    /**
+     * @param filePath путь к файлу записей
+     */
+    public MappedCarRecordDAO(String filePath) {
+        this.path = Path.of(filePath);
+        try {
+            openFile();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open records file " + path, e);
+        }
+    }
+
+    private void openFile() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean created = channel.size() == 0;
+        map(Math.max(channel.size(), INITIAL_CAPACITY));
+
+        if (created) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            end = HEADER_SIZE;
+            buffer.putInt(END_OFFSET, end);
+            return;
+        }
+
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a mapped records file: " + path);
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION && version != VERSION_WITHOUT_VEHICLE) {
+            throw new IOException("Unsupported mapped records version: " + version);
+        }
+        end = buffer.getInt(END_OFFSET);
+        buildOffsetTable();
+        if (version == VERSION_WITHOUT_VEHICLE) {
+            buffer.putInt(4, VERSION);
+            System.out.println("Upgraded mapped records file to version " + VERSION + ": " + path.toAbsolutePath());
+        }
+    }
+    /**
+     * Строит таблицу смещений, читая из каждого слота только флаг и идентификатор.
+     * Если длина слота невозможна или идентификатор не читается (например, после
+     * сбоя во время записи), данные начиная с этого слота отбрасываются
+     */
+    private void buildOffsetTable() {
+        if (end < HEADER_SIZE || end > buffer.capacity()) {
+            System.err.println("Records file " + path + " has an invalid data end " + end + ", discarding data");
+            end = HEADER_SIZE;
+            buffer.putInt(END_OFFSET, end);
+        }
+        int position = HEADER_SIZE;
+        while (position < end) {
+            int length = buffer.getInt(position);
+            if (length <= VARIABLE_PART || length > end - position) {
+                break;
+            }
+            if (buffer.get(position + FLAG) == LIVE) {
+                String id;
+                try {
+                    id = readId(position);
+                } catch (RuntimeException e) {
+                    break;
+                }
+                offsets.put(id, position);
+            } else {
+                garbageBytes += length;
+            }
+            position += length;
+        }
+
+        if (position < end) {
+            System.err.println("Records file " + path + " has a damaged slot at offset " + position
+                    + ", discarding " + (end - position) + " bytes");
+            end = position;
+            buffer.putInt(END_OFFSET, end);
+        }
+        System.out.println("Mapped " + offsets.size() + " records from: " + path.toAbsolutePath());
+    }
+
+    private void map(long capacity) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private void ensureCapacity(int required) {
+        if (end + (long) required <= buffer.capacity()) {
+            return;
+        }
+        long capacity = Math.max((long) buffer.capacity() * 2, (long) end + required);
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Records file exceeds the 2 GB mapping limit: " + path);
+        }
+        try {
+            map(capacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot grow records file " + path, e);
+        }
+    }
+
+    /**
+     * Читает идентификатор (первое поле переменной части) без копирования остальных полей
+     */
+    private String readId(int position) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(position + VARIABLE_PART);
+        return readString(view);
+    }
+
+    /**
+     * Читает строку в формате {@link BinaryRecordCodec#writeString} с текущей позиции отображения
+     */
+    private static String readString(ByteBuffer view) {
+        int length = 0;
+        int shift = 0;
+        byte next;
+        do {
+            next = view.get();
+            length |= (next & 0x7F) << shift;
+            shift += 7;
+        } while ((next & 0x80) != 0);
+
+        if (--length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Читает краткое представление записи: поля с фиксированными смещениями,
+     * идентификатор и название. Остальная переменная часть не копируется
+     */
+    private CarRecordSummary readSummary(int position) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(position + VARIABLE_PART);
+        String id = readString(view);
+        String title = readString(view);
+        return new CarRecordSummary(id, buffer.getLong(position + RECORD_VERSION), title,
+                enumValue(TYPES, buffer.get(position + TYPE)), buffer.getDouble(position + COST),
+                BinaryRecordCodec.date(buffer.getInt(position + DATE)),
+                enumValue(STATUSES, buffer.get(position + STATUS)));
+    }
+
+    private DataInputStream variablePart(int position) {
+        int length = buffer.getInt(position) - VARIABLE_PART;
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(position + VARIABLE_PART);
+        view.get(bytes);
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+    /**
+     * Читает запись целиком из отображения
+     * @param position смещение слота
+     * @return новый объект записи
+     */
+    private CarRecord readRecord(int position) {
+        return readRecord(position, null);
+    }
+
+    /**
+     * Читает запись из отображения; незапрошенные строковые поля пропускаются без декодирования
+     * @param position смещение слота
+     * @param query запрос с набором полей или null для всех полей
+     * @return новый объект записи
+     */
+    private CarRecord readRecord(int position, RecordQuery query) {
+        CarRecord record = new CarRecord();
+        record.setType(enumValue(TYPES, buffer.get(position + TYPE)));
+        record.setStatus(enumValue(STATUSES, buffer.get(position + STATUS)));
+        record.setPriority(enumValue(PRIORITIES, buffer.get(position + PRIORITY)));
+        record.setCost(buffer.getDouble(position + COST));
+        record.setMileage(buffer.getDouble(position + MILEAGE));
+        record.setFuelAmount(buffer.getDouble(position + FUEL_AMOUNT));
+        record.setFuelPrice(buffer.getDouble(position + FUEL_PRICE));
+        record.setDate(BinaryRecordCodec.date(buffer.getInt(position + DATE)));
+        record.setDueDate(BinaryRecordCodec.date(buffer.getInt(position + DUE_DATE)));
+        record.setVersion(buffer.getLong(position + RECORD_VERSION));
+
+        try {
+            DataInputStream in = variablePart(position);
+            record.setId(BinaryRecordCodec.readString(in));
+            if (includes(query, RecordQuery.Field.TITLE)) {
+                record.setTitle(BinaryRecordCodec.readString(in));
+            } else {
+                BinaryRecordCodec.skipString(in);
+            }
+            if (includes(query, RecordQuery.Field.DESCRIPTION)) {
+                record.setDescription(BinaryRecordCodec.readString(in));
+            } else {
+                BinaryRecordCodec.skipString(in);
+            }
+            int historySize = BinaryRecordCodec.readVarInt(in);
+            boolean withHistory = includes(query, RecordQuery.Field.HISTORY);
+            List<HistoryEntry> history = new ArrayList<>(withHistory ? historySize : 0);
+            for (int i = 0; i < historySize; i++) {
+                if (withHistory) {
+                    LocalDate date = BinaryRecordCodec.date(in.readInt());
+                    history.add(new HistoryEntry(date, BinaryRecordCodec.readString(in)));
+                } else {
+                    in.skipBytes(Integer.BYTES);
+                    BinaryRecordCodec.skipString(in);
+                }
+            }
+            record.setHistory(history);
+            // Слоты версии 2 заканчиваются историей
+            if (includes(query, RecordQuery.Field.VEHICLE) && in.available() > 0) {
+                record.setVehicleId(BinaryRecordCodec.readString(in));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Damaged record at offset " + position, e);
+        }
+        return record;
+    }
+
+    private static boolean includes(RecordQuery query, RecordQuery.Field field) {
+        return query == null || query.includes(field);
+    }
+
+    private static <E> E enumValue(E[] values, byte ordinal) {
+        return ordinal < 0 ? null : values[ordinal];
+    }
+
+    private static byte[] encodeSlot(CarRecord record) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0); // длина, заполняется ниже
+            out.writeByte(LIVE);
+            out.writeByte(BinaryRecordCodec.ordinal(record.getType()));
+            out.writeByte(BinaryRecordCodec.ordinal(record.getStatus()));
+            out.writeByte(BinaryRecordCodec.ordinal(record.getPriority()));
+            out.writeDouble(record.getCost());
+            out.writeDouble(record.getMileage());
+            out.writeDouble(record.getFuelAmount());
+            out.writeDouble(record.getFuelPrice());
+            out.writeInt(BinaryRecordCodec.epochDay(record.getDate()));
+            out.writeInt(BinaryRecordCodec.epochDay(record.getDueDate()));
+            out.writeLong(record.getVersion());
+
+            BinaryRecordCodec.writeString(out, record.getId());
+            BinaryRecordCodec.writeString(out, record.getTitle());
+            BinaryRecordCodec.writeString(out, record.getDescription());
+            List<HistoryEntry> history = record.getHistory();
+            int historySize = history == null ? 0 : history.size();
+            BinaryRecordCodec.writeVarInt(out, historySize);
+            for (int i = 0; i < historySize; i++) {
+                out.writeInt(BinaryRecordCodec.epochDay(history.get(i).getDate()));
+                BinaryRecordCodec.writeString(out, history.get(i).getAction());
+            }
+            BinaryRecordCodec.writeString(out, record.getVehicleId());
+
+            byte[] slot = bytes.toByteArray();
+            ByteBuffer.wrap(slot).putInt(0, slot.length);
+            return slot;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot encode record " + record.getId(), e);
+        }
+    }
+    /**
+     * Дописывает новый слот записи и помечает предыдущую версию удаленной
+     */
+    private void append(CarRecord record) {
+        byte[] slot = encodeSlot(record);
+        ensureCapacity(slot.length);
+
+        ByteBuffer view = buffer.duplicate();
+        view.position(end);
+        view.put(slot);
+        markDeleted(offsets.put(record.getId(), end));
+        end += slot.length;
+        buffer.putInt(END_OFFSET, end);
+    }
+
+    private void markDeleted(Integer position) {
+        if (position != null) {
+            buffer.put(position + FLAG, DELETED);
+            garbageBytes += buffer.getInt(position);
+        }
+    }
+
+    /**
+     * Возвращает ленивое представление всех записей: запись читается
+     * из отображения только при обращении к ней, поэтому постраничный просмотр
+     * через {@link List#subList} не загружает остальные записи
+     * @return список всех записей
+     */
+    @Override
+    public List<CarRecord> findAll() {
+        int[] positions = offsets.values().stream().mapToInt(Integer::intValue).toArray();
+        return new AbstractList<>() {
+            @Override
+            public CarRecord get(int index) {
+                return readRecord(positions[index]);
+            }
+
+            @Override
+            public int size() {
+                return positions.length;
+            }
+        };
+    }
+
+    @Override
+    public Optional<CarRecord> findById(String id) {
+        Integer position = offsets.get(id);
+        return position == null ? Optional.empty() : Optional.of(readRecord(position));
+    }
+
+    @Override
+    public void save(CarRecord record) {
+        if (record.getId() == null) {
+            record.setId(UUID.randomUUID().toString());
+        }
+        if (record.getDate() == null) {
+            record.setDate(LocalDate.now());
+        }
+        append(record);
+    }
+
+    @Override
+    public void update(CarRecord record) {
+        Integer position = offsets.get(record.getId());
+        if (position == null) {
+            throw new StaleRecordException(record.getId(), record.getVersion(), StaleRecordException.DELETED);
+        }
+        long stored = buffer.getLong(position + RECORD_VERSION);
+        if (stored != record.getVersion()) {
+            throw new StaleRecordException(record.getId(), record.getVersion(), stored);
+        }
+        CarRecord next = record.copy();
+        next.setVersion(stored + 1);
+        append(next);
+    }
+
+    @Override
+    public void delete(String id) {
+        markDeleted(offsets.remove(id));
+    }
+
+    /**
+     * Выполняет запрос по слотам отображения: условия и сортировка проверяются
+     * по полям с фиксированными смещениями, а разбираются только записи,
+     * попавшие в результат, и только запрошенные поля. Позиции слотов
+     * запоминаются при вызове, а записи читаются по мере потребления потока.
+     */
+    @Override
+    public Stream<CarRecord> stream(RecordQuery query) {
+        IntStream positions = Arrays.stream(offsets.values().stream().mapToInt(Integer::intValue).toArray())
+                .filter(position -> matchesFixedFields(position, query));
+        Comparator<Integer> order = slotOrder(query.getSort());
+        if (order != null) {
+            positions = positions.boxed().sorted(order).mapToInt(Integer::intValue);
+        }
+        if (query.getLimit() != Integer.MAX_VALUE) {
+            positions = positions.limit(query.getLimit());
+        }
+        return positions.mapToObj(position -> readRecord(position, query));
+    }
+
+    /**
+     * Сравнение слотов по полю сортировки без разбора записей
+     * @return сравнение или null, если порядок не задан
+     */
+    private Comparator<Integer> slotOrder(RecordQuery.Sort sort) {
+        switch (sort) {
+            case DATE_ASC:
+                return dateOrder(DATE, false);
+            case DATE_DESC:
+                return dateOrder(DATE, true);
+            case DUE_DATE_ASC:
+                return dateOrder(DUE_DATE, false);
+            case MILEAGE_ASC:
+                return Comparator.comparingDouble(position -> buffer.getDouble(position + MILEAGE));
+            case MILEAGE_DESC:
+                return Comparator.<Integer>comparingDouble(position -> buffer.getDouble(position + MILEAGE)).reversed();
+            case COST_DESC:
+                return Comparator.<Integer>comparingDouble(position -> buffer.getDouble(position + COST)).reversed();
+            default:
+                return null;
+        }
+    }
+
+    private Comparator<Integer> dateOrder(int field, boolean descending) {
+        int noDate = BinaryRecordCodec.epochDay(null);
+        return (first, second) -> {
+            int firstDate = buffer.getInt(first + field);
+            int secondDate = buffer.getInt(second + field);
+            if (firstDate == noDate || secondDate == noDate) {
+                // Записи без даты идут последними при любом направлении
+                return Boolean.compare(firstDate == noDate, secondDate == noDate);
+            }
+            return descending ? Integer.compare(secondDate, firstDate) : Integer.compare(firstDate, secondDate);
+        };
+    }
+
+    private boolean matchesFixedFields(int position, RecordQuery query) {
+        if (query.getTypes() != null
+                && !query.getTypes().contains(enumValue(TYPES, buffer.get(position + TYPE)))) {
+            return false;
+        }
+        if (query.getStatuses() != null
+                && !query.getStatuses().contains(enumValue(STATUSES, buffer.get(position + STATUS)))) {
+            return false;
+        }
+        if (query.hasDateRange() && !inRange(buffer.getInt(position + DATE), query.getDateFrom(), query.getDateTo())) {
+            return false;
+        }
+        if (query.hasDueDateRange()
+                && !inRange(buffer.getInt(position + DUE_DATE), query.getDueDateFrom(), query.getDueDateTo())) {
+            return false;
+        }
+        return query.matchesMileage(buffer.getDouble(position + MILEAGE));
+    }
+
+    private static boolean inRange(int epochDay, LocalDate from, LocalDate to) {
+        return epochDay != BinaryRecordCodec.epochDay(null)
+                && (from == null || epochDay >= from.toEpochDay())
+                && (to == null || epochDay <= to.toEpochDay());
+    }
+
+    @Override
+    public int count() {
+        return offsets.size();
+    }
+    /**
+     * Возвращает страницу записей, разбирая только записи этой страницы.
+     * Для сортировки по дате слоты упорядочиваются по полю даты с фиксированным смещением.
+     */
+    @Override
+    public List<CarRecord> findPage(PageRequest page) {
+        return readPage(page, this::readRecord);
+    }
+
+    /**
+     * Возвращает страницу кратких представлений, не разбирая описание и историю
+     */
+    @Override
+    public List<CarRecordSummary> findSummaryPage(PageRequest page) {
+        return readPage(page, this::readSummary);
+    }
+
+    private <T> List<T> readPage(PageRequest page, IntFunction<T> reader) {
+        int[] positions = offsets.values().stream().mapToInt(Integer::intValue).toArray();
+        if (page.getOrder() != PageRequest.Order.INSERTION) {
+            positions = Arrays.stream(positions).boxed()
+                    .sorted(dateOrder(DATE, page.getOrder() == PageRequest.Order.DATE_DESC))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+        }
+
+        int from = Math.min(page.getOffset(), positions.length);
+        int to = (int) Math.min((long) from + page.getLimit(), positions.length);
+        List<T> result = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            result.add(reader.apply(positions[i]));
+        }
+        return result;
+    }
+    /**
+     * Сбрасывает измененные страницы отображения и метаданные файла на диск
+     */
+    @Override
+    public CompletableFuture<Void> flush() {
+        try {
+            buffer.force();
+            channel.force(true);
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException | UncheckedIOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    /**
+     * Сбрасывает отображение на диск. Если удаленные слоты занимают больше
+     * половины файла, файл переписывается без них.
+     */
+    @Override
+    public void close() {
+        try {
+            buffer.force();
+            if (garbageBytes > (end - HEADER_SIZE) / 2) {
+                compact();
+            } else {
+                unmap();
+                channel.truncate(end);
+                channel.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing records file: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    /**
+     * Переписывает живые слоты во временный файл и атомарно подменяет им исходный
+     */
+    private void compact() throws IOException {
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            int newEnd = HEADER_SIZE;
+            for (int position : offsets.values()) {
+                newEnd += buffer.getInt(position);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(newEnd).putInt(0).flip();
+            out.write(header);
+            for (int position : offsets.values()) {
+                ByteBuffer slot = buffer.duplicate();
+                slot.position(position).limit(position + buffer.getInt(position));
+                while (slot.hasRemaining()) {
+                    out.write(slot);
+                }
+            }
+            out.force(false);
+        }
+
+        unmap();
+        channel.close();
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        System.out.println("Compacted records file: " + path.toAbsolutePath());
+    }
+    /**
+     * Освобождает отображение, не дожидаясь сборщика мусора. Под живым отображением
+     * Windows не дает обрезать или подменить файл, а в Linux обращение к отрезанной
+     * части отображения аварийно завершает JVM. Если освободить не удалось,
+     * отображение остается до сборки мусора.
+     */
+    private void unmap() {
+        MappedByteBuffer mapped = buffer;
+        buffer = null;
+        try {
+            Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            ((Unsafe) field.get(null)).invokeCleaner(mapped);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            System.err.println("Cannot release records file mapping: " + e);
+        }
+    }
+}
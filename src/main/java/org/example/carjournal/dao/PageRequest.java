@@ -0,0 +1,75 @@
+package org.example.carjournal.dao;
+
+import org.example.carjournal.model.CarRecord;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+
+/**
+ * Параметры постраничной выборки записей: смещение, размер страницы и порядок
+ */
+public final class PageRequest {
+    /**
+     * Порядок записей в выборке
+     */
+    public enum Order {
+        /**
+         * Порядок добавления записей в хранилище
+         */
+        INSERTION(null),
+        /**
+         * По возрастанию даты операции, записи без даты - в конце
+         */
+        DATE_ASC(Comparator.comparing(CarRecord::getDate, Comparator.nullsLast(Comparator.<LocalDate>naturalOrder()))),
+        /**
+         * По убыванию даты операции, записи без даты - в конце
+         */
+        DATE_DESC(Comparator.comparing(CarRecord::getDate, Comparator.nullsLast(Comparator.<LocalDate>reverseOrder())));
+
+        private final Comparator<CarRecord> comparator;
+
+        Order(Comparator<CarRecord> comparator) {
+            this.comparator = comparator;
+        }
+
+        /**
+         * @return компаратор записей или null для порядка добавления
+         */
+        public Comparator<CarRecord> comparator() {
+            return comparator;
+        }
+    }
+
+    private final int offset;
+    private final int limit;
+    private final Order order;
+
+    private PageRequest(int offset, int limit, Order order) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit must not be negative");
+        }
+        this.offset = offset;
+        this.limit = limit;
+        this.order = order;
+    }
+
+    /**
+     * @param offset номер первой записи страницы
+     * @param limit максимальное количество записей на странице
+     * @return запрос страницы в порядке добавления записей
+     */
+    public static PageRequest of(int offset, int limit) {
+        return new PageRequest(offset, limit, Order.INSERTION);
+    }
+
+    /**
+     * @return запрос той же страницы в указанном порядке
+     */
+    public PageRequest sorted(Order order) {
+        return new PageRequest(offset, limit, order);
+    }
+
+    public int getOffset() { return offset; }
+    public int getLimit() { return limit; }
+    public Order getOrder() { return order; }
+}
@@ -0,0 +1,384 @@
+package org.example.carjournal.dao;
+
+import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.model.CarRecordSummary;
+import org.example.carjournal.model.RecordStatus;
+import org.example.carjournal.model.Vehicle;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище записей, разделенное по автомобилям.
+ * <p>
+ * Записи каждого автомобиля лежат в отдельном разделе - самостоятельном хранилище
+ * в каталоге {@code records}; записи без автомобиля попадают в раздел
+ * {@value #UNASSIGNED}. Список автомобилей хранится в {@code vehicles.xml}.
+ * Раздел открывается только при первом обращении к нему, поэтому работа с одним
+ * автомобилем ({@link #findByVehicle}) не загружает записи остальных, а выборки
+ * по всему парку выполняются по разделам параллельно.
+ * <p>
+ * Как и остальные реализации, хранилище не рассчитано на одновременные изменения
+ * из нескольких потоков (см. {@link ConcurrentCarRecordDAO}).
+ */
+public class PartitionedCarRecordDAO implements CarRecordDAO {
+    /**
+     * Раздел записей, для которых автомобиль не указан
+     */
+    static final String UNASSIGNED = "unassigned";
+    private static final String VEHICLES_FILE = "vehicles.xml";
+    private static final String RECORDS_DIR = "records";
+    private static final Pattern VEHICLE_ID = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private final Path directory;
+    private final String extension;
+    private final Function<Path, CarRecordDAO> opener;
+    private final XmlMapper xmlMapper = XmlCarRecordDAO.createXmlMapper();
+    private final Map<String, Vehicle> vehicles = new LinkedHashMap<>();
+    private final ConcurrentMap<String, CarRecordDAO> partitions = new ConcurrentHashMap<>();
+    /**
+     * Раздел каждой записи из уже открытых разделов
+     */
+    private final ConcurrentMap<String, String> locations = new ConcurrentHashMap<>();
+
+    /**
+     * Создает хранилище с разделами в формате XML
+     * @param directory каталог хранилища
+     */
+    public PartitionedCarRecordDAO(Path directory) {
+        this(directory, ".xml", path -> new XmlCarRecordDAO(path.toString()));
+    }
+
+    /**
+     * @param directory каталог хранилища
+     * @param extension расширение файлов разделов (например, ".bin")
+     * @param opener открывает хранилище раздела по пути к его файлу
+     */
+    public PartitionedCarRecordDAO(Path directory, String extension, Function<Path, CarRecordDAO> opener) {
+        this.directory = directory;
+        this.extension = extension;
+        this.opener = opener;
+        try {
+            Files.createDirectories(directory.resolve(RECORDS_DIR));
+            Path vehiclesFile = directory.resolve(VEHICLES_FILE);
+            if (Files.exists(vehiclesFile) && Files.size(vehiclesFile) > 0) {
+                List<Vehicle> loaded = xmlMapper.readValue(vehiclesFile.toFile(), new TypeReference<List<Vehicle>>() {});
+                if (loaded != null) {
+                    loaded.forEach(vehicle -> vehicles.put(vehicle.getId(), vehicle));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open partitioned records in " + directory, e);
+        }
+        System.out.println("Found " + vehicles.size() + " vehicles in: " + directory.toAbsolutePath());
+    }
+
+    /**
+     * @return список автомобилей в порядке добавления
+     */
+    public synchronized List<Vehicle> findVehicles() {
+        return new ArrayList<>(vehicles.values());
+    }
+
+    /**
+     * Добавляет автомобиль или обновляет его данные
+     * @param vehicle автомобиль; если идентификатор не задан, он создается
+     */
+    public synchronized void saveVehicle(Vehicle vehicle) {
+        if (vehicle.getId() == null) {
+            vehicle.setId(UUID.randomUUID().toString());
+        }
+        if (!VEHICLE_ID.matcher(vehicle.getId()).matches() || UNASSIGNED.equals(vehicle.getId())) {
+            throw new IllegalArgumentException("Invalid vehicle id: " + vehicle.getId());
+        }
+        vehicles.put(vehicle.getId(), vehicle);
+        try {
+            Path target = directory.resolve(VEHICLES_FILE);
+            Path temp = directory.resolve(VEHICLES_FILE + ".tmp");
+            xmlMapper.writerWithDefaultPrettyPrinter().writeValue(temp.toFile(), new ArrayList<>(vehicles.values()));
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot save vehicles to " + directory, e);
+        }
+    }
+
+    /**
+     * @return ключи всех разделов: раздел без автомобиля и разделы автомобилей
+     */
+    private synchronized List<String> partitionKeys() {
+        List<String> keys = new ArrayList<>(vehicles.size() + 1);
+        keys.add(UNASSIGNED);
+        keys.addAll(vehicles.keySet());
+        return keys;
+    }
+
+    private synchronized String partitionKey(CarRecord record) {
+        String vehicleId = record.getVehicleId();
+        if (vehicleId == null) {
+            return UNASSIGNED;
+        }
+        if (!vehicles.containsKey(vehicleId)) {
+            throw new IllegalArgumentException("Unknown vehicle: " + vehicleId);
+        }
+        return vehicleId;
+    }
+
+    /**
+     * Возвращает хранилище раздела, открывая его при первом обращении
+     */
+    private CarRecordDAO partition(String key) {
+        return partitions.computeIfAbsent(key, k -> {
+            CarRecordDAO dao = opener.apply(directory.resolve(RECORDS_DIR).resolve(k + extension));
+            for (CarRecord record : dao.findAll()) {
+                locations.put(record.getId(), k);
+            }
+            return dao;
+        });
+    }
+
+    /**
+     * @return количество открытых разделов
+     */
+    int openPartitions() {
+        return partitions.size();
+    }
+
+    /**
+     * Находит раздел записи: сначала среди открытых, затем открывая остальные
+     * @return ключ раздела или null, если записи нет
+     */
+    private String locate(String id) {
+        String key = locations.get(id);
+        if (key != null) {
+            return key;
+        }
+        List<String> closed = partitionKeys().stream()
+                .filter(candidate -> !partitions.containsKey(candidate))
+                .collect(Collectors.toList());
+        closed.parallelStream().forEach(this::partition);
+        return locations.get(id);
+    }
+
+    /**
+     * Выполняет выборку во всех разделах параллельно и объединяет результаты
+     * в порядке разделов
+     */
+    private List<CarRecord> fanOut(Function<CarRecordDAO, List<CarRecord>> query) {
+        return partitionKeys().parallelStream()
+                .map(key -> query.apply(partition(key)))
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<CarRecord> findAll() {
+        return fanOut(CarRecordDAO::findAll);
+    }
+
+    @Override
+    public Optional<CarRecord> findById(String id) {
+        String key = id == null ? null : locate(id);
+        return key == null ? Optional.empty() : partition(key).findById(id);
+    }
+
+    @Override
+    public List<CarRecord> findByVehicle(String vehicleId) {
+        synchronized (this) {
+            if (!vehicles.containsKey(vehicleId)) {
+                return new ArrayList<>();
+            }
+        }
+        return new ArrayList<>(partition(vehicleId).findAll());
+    }
+
+    @Override
+    public void save(CarRecord record) {
+        String key = partitionKey(record);
+        partition(key).save(record);
+        locations.put(record.getId(), key);
+    }
+
+    /**
+     * Обновляет запись; при смене автомобиля запись переносится в другой раздел
+     * @throws StaleRecordException если запись удалена или ее версия устарела
+     */
+    @Override
+    public void update(CarRecord record) {
+        String target = partitionKey(record);
+        String current = locate(record.getId());
+        if (target.equals(current)) {
+            partition(current).update(record);
+            return;
+        }
+        StaleRecordException.check(current == null ? null : partition(current).findById(record.getId()).orElse(null), record);
+        move(record, current, target);
+    }
+
+    /**
+     * Переносит запись между разделами: сначала она сохраняется в новом разделе,
+     * затем удаляется из старого, чтобы сбой между шагами не приводил к потере записи
+     */
+    private void move(CarRecord record, String from, String to) {
+        CarRecord moved = record.copy();
+        moved.setVersion(record.getVersion() + 1);
+        partition(to).save(moved);
+        partition(from).delete(record.getId());
+        locations.put(record.getId(), to);
+    }
+
+    /**
+     * Обновляет записи, группируя их по разделам. Версии всех записей
+     * проверяются до изменений, поэтому при конфликте не применяется ни одно обновление
+     */
+    @Override
+    public void updateAll(Collection<CarRecord> updated) {
+        Map<String, List<CarRecord>> byPartition = new LinkedHashMap<>();
+        Map<CarRecord, String> moved = new LinkedHashMap<>();
+        for (CarRecord record : updated) {
+            String current = locate(record.getId());
+            StaleRecordException.check(current == null ? null : partition(current).findById(record.getId()).orElse(null), record);
+            String target = partitionKey(record);
+            if (target.equals(current)) {
+                byPartition.computeIfAbsent(current, key -> new ArrayList<>()).add(record);
+            } else {
+                moved.put(record, current);
+            }
+        }
+
+        byPartition.forEach((key, records) -> partition(key).updateAll(records));
+        moved.forEach((record, from) -> move(record, from, partitionKey(record)));
+    }
+
+    @Override
+    public void delete(String id) {
+        String key = locate(id);
+        if (key != null) {
+            partition(key).delete(id);
+            locations.remove(id);
+        }
+    }
+
+    @Override
+    public List<CarRecord> findDueBefore(RecordStatus status, LocalDate date) {
+        return fanOut(partition -> partition.findDueBefore(status, date));
+    }
+
+    /**
+     * Без сортировки разделы читаются по очереди и лениво, поэтому при ограничении
+     * количества результатов оставшиеся разделы не открываются. С сортировкой
+     * каждый раздел выполняет запрос целиком (с тем же ограничением) параллельно,
+     * а результаты разделов сливаются
+     */
+    @Override
+    public Stream<CarRecord> stream(RecordQuery query) {
+        if (query.getSort().comparator() == null) {
+            Stream<CarRecord> records = partitionKeys().stream().flatMap(key -> partition(key).stream(query));
+            return query.getLimit() == Integer.MAX_VALUE ? records : records.limit(query.getLimit());
+        }
+        return query.orderAndLimit(fanOut(partition -> partition.find(query)).stream());
+    }
+
+    @Override
+    public List<CarRecord> find(RecordQuery query) {
+        if (query.getSort().comparator() == null && query.getLimit() == Integer.MAX_VALUE) {
+            return fanOut(partition -> partition.find(query));
+        }
+        return stream(query).collect(Collectors.toList());
+    }
+
+    @Override
+    public int count() {
+        return partitionKeys().parallelStream()
+                .mapToInt(key -> partition(key).count())
+                .sum();
+    }
+
+    /**
+     * Возвращает страницу записей. В порядке добавления разделы идут друг за другом,
+     * и целиком пропущенные разделы не читаются; при сортировке по дате
+     * из каждого раздела берется его начало нужной длины, и результаты сливаются
+     */
+    @Override
+    public List<CarRecord> findPage(PageRequest page) {
+        return readPage(page, CarRecordDAO::findPage, CarRecord::getDate);
+    }
+
+    @Override
+    public List<CarRecordSummary> findSummaryPage(PageRequest page) {
+        return readPage(page, CarRecordDAO::findSummaryPage, CarRecordSummary::getDate);
+    }
+
+    /**
+     * @param reader чтение страницы одного раздела
+     * @param date дата элемента для слияния разделов при сортировке по дате
+     */
+    private <T> List<T> readPage(PageRequest page, BiFunction<CarRecordDAO, PageRequest, List<T>> reader,
+                                 Function<T, LocalDate> date) {
+        if (page.getOrder().comparator() == null) {
+            List<T> result = new ArrayList<>();
+            int skip = page.getOffset();
+            for (String key : partitionKeys()) {
+                int remaining = page.getLimit() - result.size();
+                if (remaining == 0) {
+                    break;
+                }
+                CarRecordDAO partition = partition(key);
+                int count = partition.count();
+                if (skip >= count) {
+                    skip -= count;
+                    continue;
+                }
+                result.addAll(reader.apply(partition, PageRequest.of(skip, remaining)));
+                skip = 0;
+            }
+            return result;
+        }
+
+        int head = (int) Math.min(Integer.MAX_VALUE, (long) page.getOffset() + page.getLimit());
+        PageRequest heads = PageRequest.of(0, head).sorted(page.getOrder());
+        Comparator<T> order = Comparator.comparing(date, Comparator.nullsLast(
+                page.getOrder() == PageRequest.Order.DATE_ASC
+                        ? Comparator.<LocalDate>naturalOrder() : Comparator.<LocalDate>reverseOrder()));
+        return partitionKeys().parallelStream()
+                .map(key -> reader.apply(partition(key), heads))
+                .flatMap(List::stream)
+                .sorted(order)
+                .skip(page.getOffset())
+                .limit(page.getLimit())
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public CompletableFuture<Void> flush() {
+        return CompletableFuture.allOf(partitions.values().stream()
+                .map(CarRecordDAO::flush)
+                .toArray(CompletableFuture[]::new));
+    }
+
+    @Override
+    public void close() {
+        partitions.values().parallelStream().forEach(CarRecordDAO::close);
+    }
+}
@@ -0,0 +1,77 @@
+package org.example.carjournal.dao;
+
+import org.example.carjournal.model.CarRecord;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+/**
+ * Конвертер файлов записей между XML и двоичным форматом.
+ * <p>
+ * Запуск: {@code RecordFormatConverter car_records.xml car_records.bin}
+ * (направление определяется по расширению исходного файла).
+ */
+public final class RecordFormatConverter {
+
+    private RecordFormatConverter() {
+    }
+    /**
+     * Переводит XML-файл записей в двоичный формат
+     * @param xmlPath исходный XML-файл
+     * @param binaryPath создаваемый двоичный файл
+     * @return количество перенесенных записей
+     */
+    public static int xmlToBinary(Path xmlPath, Path binaryPath) throws IOException {
+        List<CarRecord> records = new ArrayList<>();
+        XmlRecordReader.Result result = new XmlRecordReader(XmlCarRecordDAO.createXmlMapper(), xmlPath)
+                .forEach(records::add);
+        if (!result.isComplete()) {
+            throw new IOException("XML records file is damaged after " + result.getCount()
+                    + " records: " + result.getError());
+        }
+        BinaryRecordCodec.writeFile(binaryPath, records);
+        return records.size();
+    }
+    /**
+     * Переводит двоичный файл записей в XML
+     * @param binaryPath исходный двоичный файл
+     * @param xmlPath создаваемый XML-файл
+     * @return количество перенесенных записей
+     */
+    public static int binaryToXml(Path binaryPath, Path xmlPath) throws IOException {
+        List<CarRecord> records = new ArrayList<>();
+        BinaryRecordCodec.readFile(binaryPath, records::add);
+        XmlMapper xmlMapper = XmlCarRecordDAO.createXmlMapper();
+        xmlMapper.writerWithDefaultPrettyPrinter().writeValue(xmlPath.toFile(), records);
+        return records.size();
+    }
+
+    /**
+     * Записывает записи в файл; формат определяется по расширению (.bin - двоичный, иначе XML)
+     * @param path создаваемый файл
+     * @param records записи для сохранения
+     */
+    public static void writeRecords(Path path, List<CarRecord> records) throws IOException {
+        if (path.getFileName().toString().endsWith(".bin")) {
+            BinaryRecordCodec.writeFile(path, records);
+        } else {
+            XmlCarRecordDAO.createXmlMapper().writerWithDefaultPrettyPrinter().writeValue(path.toFile(), records);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: RecordFormatConverter <source.xml|source.bin> <target>");
+            System.exit(1);
+        }
+
+        Path source = Path.of(args[0]);
+        Path target = Path.of(args[1]);
+        int count = source.getFileName().toString().endsWith(".xml")
+                ? xmlToBinary(source, target)
+                : binaryToXml(source, target);
+        System.out.println("Converted " + count + " records: " + source + " -> " + target);
+    }
+}
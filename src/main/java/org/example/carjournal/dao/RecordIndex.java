@@ -0,0 +1,400 @@
+package org.example.carjournal.dao;
+
+import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.model.RecordStatus;
+import org.example.carjournal.model.RecordType;
+
+import java.time.LocalDate;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Индексированное хранилище записей в памяти.
+ * Поддерживает хеш-индекс по идентификатору, вторичные индексы по статусу и типу
+ * упорядоченные индексы сроков выполнения (общий и внутри каждого статуса),
+ * дат операций и пробега, поэтому поиск по id стоит O(1), а выборки - O(размер результата).
+ * Для выборки по нескольким условиям ({@link #stream}) используется индекс,
+ * дающий наименьшее количество кандидатов.
+ * <p>
+ * Записи изменяемы, поэтому для каждой записи запоминаются ключи, под которыми она
+ * проиндексирована: при обновлении запись корректно переносится между корзинами,
+ * даже если ее статус или тип уже изменили на месте.
+ */
+class RecordIndex {
+    private final Map<String, Entry> byId = new LinkedHashMap<>();
+    private final Map<RecordStatus, Map<String, CarRecord>> byStatus = new EnumMap<>(RecordStatus.class);
+    private final Map<RecordType, Map<String, CarRecord>> byType = new EnumMap<>(RecordType.class);
+    private final Map<RecordStatus, TreeMap<LocalDate, Map<String, CarRecord>>> byStatusDueDate =
+            new EnumMap<>(RecordStatus.class);
+    private final TreeMap<LocalDate, Map<String, CarRecord>> byDate = new TreeMap<>();
+    private final Map<String, CarRecord> undated = new LinkedHashMap<>();
+    private final TreeMap<LocalDate, Map<String, CarRecord>> byDueDate = new TreeMap<>();
+    private final TreeMap<Double, Map<String, CarRecord>> byMileage = new TreeMap<>();
+
+    /**
+     * Проиндексированная запись вместе с ключами вторичных индексов
+     */
+    private static final class Entry {
+        final CarRecord record;
+        final RecordStatus status;
+        final RecordType type;
+        final LocalDate dueDate;
+        final LocalDate date;
+        final double mileage;
+
+        Entry(CarRecord record) {
+            this.record = record;
+            this.status = record.getStatus();
+            this.type = record.getType();
+            this.dueDate = record.getDueDate();
+            this.date = record.getDate();
+            this.mileage = record.getMileage();
+        }
+    }
+
+    /**
+     * Добавляет запись или заменяет запись с тем же идентификатором
+     * @param record запись для индексации
+     */
+    void put(CarRecord record) {
+        Entry entry = new Entry(record);
+        Entry previous = byId.put(record.getId(), entry);
+        if (previous != null) {
+            unindex(previous);
+        }
+        if (entry.status != null) {
+            byStatus.computeIfAbsent(entry.status, key -> new LinkedHashMap<>()).put(record.getId(), record);
+        }
+        if (entry.type != null) {
+            byType.computeIfAbsent(entry.type, key -> new LinkedHashMap<>()).put(record.getId(), record);
+        }
+        if (entry.status != null && entry.dueDate != null) {
+            byStatusDueDate.computeIfAbsent(entry.status, key -> new TreeMap<>())
+                    .computeIfAbsent(entry.dueDate, key -> new LinkedHashMap<>())
+                    .put(record.getId(), record);
+        }
+        if (entry.date != null) {
+            byDate.computeIfAbsent(entry.date, key -> new LinkedHashMap<>()).put(record.getId(), record);
+        } else {
+            undated.put(record.getId(), record);
+        }
+        if (entry.dueDate != null) {
+            byDueDate.computeIfAbsent(entry.dueDate, key -> new LinkedHashMap<>()).put(record.getId(), record);
+        }
+        byMileage.computeIfAbsent(entry.mileage, key -> new LinkedHashMap<>()).put(record.getId(), record);
+    }
+
+    /**
+     * Удаляет запись из всех индексов
+     * @param id идентификатор записи
+     * @return удаленная запись или null, если записи не было
+     */
+    CarRecord remove(String id) {
+        Entry entry = byId.remove(id);
+        if (entry == null) {
+            return null;
+        }
+        unindex(entry);
+        return entry.record;
+    }
+
+    private void unindex(Entry entry) {
+        String id = entry.record.getId();
+        if (entry.status != null) {
+            byStatus.get(entry.status).remove(id);
+        }
+        if (entry.type != null) {
+            byType.get(entry.type).remove(id);
+        }
+        if (entry.status != null && entry.dueDate != null) {
+            TreeMap<LocalDate, Map<String, CarRecord>> dueDates = byStatusDueDate.get(entry.status);
+            Map<String, CarRecord> bucket = dueDates.get(entry.dueDate);
+            bucket.remove(id);
+            if (bucket.isEmpty()) {
+                dueDates.remove(entry.dueDate);
+            }
+        }
+        if (entry.date != null) {
+            removeFromBucket(byDate, entry.date, id);
+        } else {
+            undated.remove(id);
+        }
+        if (entry.dueDate != null) {
+            removeFromBucket(byDueDate, entry.dueDate, id);
+        }
+        removeFromBucket(byMileage, entry.mileage, id);
+    }
+
+    private static <K> void removeFromBucket(TreeMap<K, Map<String, CarRecord>> index, K key, String id) {
+        Map<String, CarRecord> bucket = index.get(key);
+        bucket.remove(id);
+        if (bucket.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    CarRecord get(String id) {
+        Entry entry = byId.get(id);
+        return entry == null ? null : entry.record;
+    }
+
+    int size() {
+        return byId.size();
+    }
+
+    /**
+     * @return все записи в порядке добавления
+     */
+    Collection<CarRecord> all() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<CarRecord> iterator() {
+                Iterator<Entry> entries = byId.values().iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public CarRecord next() {
+                        return entries.next().record;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return byId.size();
+            }
+        };
+    }
+
+    /**
+     * Выбирает записи по условиям запроса. Для каждого применимого индекса
+     * (статус, тип, диапазоны срока, даты и пробега) оценивается количество
+     * кандидатов, причем подсчет прекращается, как только он превышает лучший
+     * уже найденный вариант. Записи самого избирательного индекса проверяются
+     * на остальные условия.
+     * <p>
+     * Если результаты нужно упорядочить по дате или пробегу и их количество
+     * ограничено (или других индексов нет), записи перебираются прямо
+     * в порядке упорядоченного индекса: сортировка не нужна, и перебор
+     * останавливается на последнем нужном результате.
+     * @param query условия, порядок и ограничение количества
+     * @return ленивый поток подходящих записей; его нужно дочитать до изменения индекса
+     */
+    Stream<CarRecord> stream(RecordQuery query) {
+        Collection<Map<String, CarRecord>> best = null;
+        long bestSize = byId.size();
+        for (Collection<Map<String, CarRecord>> candidate : candidates(query)) {
+            long size = count(candidate, bestSize);
+            if (best == null || size < bestSize) {
+                best = candidate;
+                bestSize = size;
+            }
+        }
+
+        Stream<CarRecord> ordered = null;
+        if (best == null || query.getLimit() != Integer.MAX_VALUE) {
+            ordered = inIndexOrder(query);
+        }
+        if (ordered != null) {
+            ordered = ordered.filter(query::matches);
+            return query.getLimit() == Integer.MAX_VALUE ? ordered : ordered.limit(query.getLimit());
+        }
+
+        Stream<CarRecord> records = best == null
+                ? byId.values().stream().map(entry -> entry.record)
+                : flatten(best);
+        return query.orderAndLimit(records.filter(query::matches));
+    }
+
+    /**
+     * @return подходящие записи в порядке выбранного индекса
+     */
+    List<CarRecord> find(RecordQuery query) {
+        return stream(query).collect(Collectors.toList());
+    }
+
+    /**
+     * Перебирает записи в порядке сортировки запроса по упорядоченному индексу,
+     * ограничиваясь диапазоном запроса по тому же полю
+     * @return поток записей или null, если для порядка нет индекса
+     */
+    private Stream<CarRecord> inIndexOrder(RecordQuery query) {
+        switch (query.getSort()) {
+            case DATE_ASC:
+            case DATE_DESC: {
+                NavigableMap<LocalDate, Map<String, CarRecord>> dates =
+                        rangeMap(byDate, query.getDateFrom(), query.getDateTo());
+                if (query.getSort() == RecordQuery.Sort.DATE_DESC) {
+                    dates = dates.descendingMap();
+                }
+                // Записи без даты идут последними и не попадают ни в один диапазон дат
+                return query.hasDateRange()
+                        ? flatten(dates.values())
+                        : Stream.concat(flatten(dates.values()), undated.values().stream());
+            }
+            case MILEAGE_ASC:
+            case MILEAGE_DESC: {
+                NavigableMap<Double, Map<String, CarRecord>> mileages =
+                        rangeMap(byMileage, query.getMileageFrom(), query.getMileageTo());
+                if (query.getSort() == RecordQuery.Sort.MILEAGE_DESC) {
+                    mileages = mileages.descendingMap();
+                }
+                return flatten(mileages.values());
+            }
+            default:
+                return null;
+        }
+    }
+
+    private static Stream<CarRecord> flatten(Collection<Map<String, CarRecord>> buckets) {
+        return buckets.stream().flatMap(bucket -> bucket.values().stream());
+    }
+
+    /**
+     * @return наборы корзин индексов, заведомо содержащие все подходящие записи
+     */
+    private List<Collection<Map<String, CarRecord>>> candidates(RecordQuery query) {
+        List<Collection<Map<String, CarRecord>>> candidates = new ArrayList<>();
+        if (query.getStatuses() != null) {
+            candidates.add(buckets(byStatus, query.getStatuses()));
+            if (query.hasDueDateRange()) {
+                List<Map<String, CarRecord>> dueBuckets = new ArrayList<>();
+                for (RecordStatus status : query.getStatuses()) {
+                    TreeMap<LocalDate, Map<String, CarRecord>> dueDates = byStatusDueDate.get(status);
+                    if (dueDates != null) {
+                        dueBuckets.addAll(range(dueDates, query.getDueDateFrom(), query.getDueDateTo()));
+                    }
+                }
+                candidates.add(dueBuckets);
+            }
+        }
+        if (query.getTypes() != null) {
+            candidates.add(buckets(byType, query.getTypes()));
+        }
+        if (query.hasDueDateRange()) {
+            candidates.add(range(byDueDate, query.getDueDateFrom(), query.getDueDateTo()));
+        }
+        if (query.hasDateRange()) {
+            candidates.add(range(byDate, query.getDateFrom(), query.getDateTo()));
+        }
+        if (query.hasMileageRange()) {
+            candidates.add(range(byMileage, query.getMileageFrom(), query.getMileageTo()));
+        }
+        return candidates;
+    }
+
+    private static <K> List<Map<String, CarRecord>> buckets(Map<K, Map<String, CarRecord>> index, Collection<K> keys) {
+        List<Map<String, CarRecord>> buckets = new ArrayList<>(keys.size());
+        for (K key : keys) {
+            Map<String, CarRecord> bucket = index.get(key);
+            if (bucket != null) {
+                buckets.add(bucket);
+            }
+        }
+        return buckets;
+    }
+
+    private static <K extends Comparable<? super K>> Collection<Map<String, CarRecord>> range(
+            TreeMap<K, Map<String, CarRecord>> index, K from, K to) {
+        return rangeMap(index, from, to).values();
+    }
+
+    private static <K extends Comparable<? super K>> NavigableMap<K, Map<String, CarRecord>> rangeMap(
+            TreeMap<K, Map<String, CarRecord>> index, K from, K to) {
+        if (from != null && to != null) {
+            return from.compareTo(to) > 0 ? Collections.emptyNavigableMap() : index.subMap(from, true, to, true);
+        }
+        if (from != null) {
+            return index.tailMap(from, true);
+        }
+        return to != null ? index.headMap(to, true) : index;
+    }
+
+    /**
+     * Считает записи в корзинах, но не дальше заданного предела
+     */
+    private static long count(Collection<Map<String, CarRecord>> buckets, long limit) {
+        long count = 0;
+        for (Map<String, CarRecord> bucket : buckets) {
+            count += bucket.size();
+            if (count > limit) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Возвращает страницу записей, пропуская предшествующие без копирования
+     * @param order порядок записей
+     * @param offset номер первой записи страницы
+     * @param limit максимальное количество записей
+     * @return записи страницы
+     */
+    List<CarRecord> page(PageRequest.Order order, int offset, int limit) {
+        List<CarRecord> result = new ArrayList<>(Math.min(limit, Math.max(0, byId.size() - offset)));
+        Iterator<CarRecord> records;
+        switch (order) {
+            case DATE_ASC:
+                records = byDateIterator(byDate.values());
+                break;
+            case DATE_DESC:
+                records = byDateIterator(byDate.descendingMap().values());
+                break;
+            default:
+                records = all().iterator();
+        }
+        for (int i = 0; i < offset && records.hasNext(); i++) {
+            records.next();
+        }
+        while (result.size() < limit && records.hasNext()) {
+            result.add(records.next());
+        }
+        return result;
+    }
+
+    private Iterator<CarRecord> byDateIterator(Collection<Map<String, CarRecord>> buckets) {
+        Iterator<Map<String, CarRecord>> bucketIterator = buckets.iterator();
+        return new Iterator<>() {
+            private Iterator<CarRecord> current = Collections.emptyIterator();
+            private boolean undatedStarted;
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext()) {
+                    if (bucketIterator.hasNext()) {
+                        current = bucketIterator.next().values().iterator();
+                    } else if (!undatedStarted) {
+                        // Записи без даты идут последними при любом направлении
+                        undatedStarted = true;
+                        current = undated.values().iterator();
+                    } else {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public CarRecord next() {
+                hasNext();
+                return current.next();
+            }
+        };
+    }
+}
@@ -0,0 +1,348 @@
+package org.example.carjournal.dao;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал изменений (write-ahead log) хранилища записей.
+ * Файл начинается с заголовка [сигнатура: 4 байта][версия: 1 байт], после которого
+ * каждая мутация дописывается в конец в формате
+ * [тип операции: 1 байт][длина данных: 4 байта][CRC32: 4 байта][данные],
+ * поэтому стоимость записи не зависит от количества хранимых записей.
+ * Контрольная сумма покрывает тип операции и данные, так что при воспроизведении
+ * отличаются целые записи от недописанных или испорченных.
+ * Файлы старого формата (без заголовка и контрольных сумм) читаются и дописываются
+ * в своем формате.
+ * Синхронизация с диском (fsync) выполняется явно через {@link #sync()},
+ * что позволяет сбрасывать записи пачками.
+ */
+class RecordJournal implements Closeable {
+    static final byte UPSERT = 1;
+    static final byte DELETE = 2;
+    /**
+     * Операции журнала истории ({@link HistoryLog}): новое действие словаря,
+     * запись истории и удаление истории записи
+     */
+    static final byte HISTORY_ACTION = 3;
+    static final byte HISTORY_ENTRY = 4;
+    static final byte HISTORY_CLEAR = 5;
+
+    private static final int MAGIC = 0x434A4C47; // "CJLG"
+    private static final byte VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 5;
+    private static final int LEGACY_ENTRY_HEADER_SIZE = 5;
+    private static final int ENTRY_HEADER_SIZE = 9;
+
+    /**
+     * Операция записи в журнал
+     */
+    interface Write {
+        void appendTo(RecordJournal journal) throws IOException;
+    }
+
+    /**
+     * Обработчик записей журнала при воспроизведении
+     */
+    interface EntryHandler {
+        void accept(byte operation, byte[] payload);
+    }
+
+    private final FileChannel channel;
+    private final boolean checksummed;
+    private int unsyncedEntries;
+    private int entries;
+
+    private RecordJournal(FileChannel channel, boolean checksummed) {
+        this.channel = channel;
+        this.checksummed = checksummed;
+    }
+
+    /**
+     * Открывает журнал для дозаписи
+     * @param path путь к файлу журнала
+     * @return открытый журнал
+     */
+    static RecordJournal open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean checksummed = true;
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+                header.putInt(MAGIC).put(VERSION).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+            } else {
+                checksummed = readHeader(channel);
+            }
+            channel.position(channel.size());
+            return new RecordJournal(channel, checksummed);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Проверяет, записан ли журнал в формате с контрольными суммами
+     * @param path путь к файлу журнала
+     */
+    static boolean hasChecksums(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return readHeader(channel);
+        }
+    }
+
+    /**
+     * Проверяет заголовок файла журнала
+     * @return true для журнала с контрольными суммами, false для старого формата
+     */
+    private static boolean readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+        if (header.remaining() < Integer.BYTES || header.getInt() != MAGIC) {
+            return false;
+        }
+        if (!header.hasRemaining() || header.get() != VERSION) {
+            throw new IOException("Unsupported journal version");
+        }
+        return true;
+    }
+
+    /**
+     * Дописывает операцию в конец журнала
+     * @param operation тип операции ({@link #UPSERT} или {@link #DELETE})
+     * @param payload сериализованные данные операции
+     */
+    void append(byte operation, byte[] payload) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(entrySize(payload));
+        put(buffer, operation, payload);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        entries++;
+        unsyncedEntries++;
+    }
+
+    /**
+     * Дописывает пачку однотипных операций одной записью в файл
+     * @param operation тип операции
+     * @param payloads сериализованные данные операций
+     */
+    void appendBatch(byte operation, List<byte[]> payloads) throws IOException {
+        int size = 0;
+        for (byte[] payload : payloads) {
+            size += entrySize(payload);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (byte[] payload : payloads) {
+            put(buffer, operation, payload);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        entries += payloads.size();
+        unsyncedEntries += payloads.size();
+    }
+
+    private int entrySize(byte[] payload) {
+        return (checksummed ? ENTRY_HEADER_SIZE : LEGACY_ENTRY_HEADER_SIZE) + payload.length;
+    }
+
+    private void put(ByteBuffer buffer, byte operation, byte[] payload) {
+        buffer.put(operation).putInt(payload.length);
+        if (checksummed) {
+            buffer.putInt(checksum(operation, payload));
+        }
+        buffer.put(payload);
+    }
+
+    private static int checksum(byte operation, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(operation);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Принудительно сбрасывает накопленные записи на диск
+     */
+    void sync() throws IOException {
+        if (unsyncedEntries > 0) {
+            channel.force(false);
+            unsyncedEntries = 0;
+        }
+    }
+
+    /**
+     * Сбрасывает на диск записи, уже переданные файловой системе. В отличие от
+     * {@link #sync()}, может вызываться из другого потока одновременно с дозаписью
+     * @throws java.nio.channels.ClosedChannelException если журнал уже закрыт
+     */
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * @return количество записей, добавленных в журнал с момента открытия
+     */
+    int size() {
+        return entries;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Воспроизводит журнал, передавая каждую целую запись обработчику.
+     * Недописанный "хвост" (например, после сбоя во время записи) отбрасывается,
+     * а файл обрезается до последней целой записи. Если в файле с контрольными суммами
+     * после испорченной записи (неверный тип, длина или контрольная сумма) есть целые
+     * записи, испорчена середина файла: воспроизведение останавливается так же,
+     * но перед обрезкой файл копируется рядом для ручного восстановления.
+     * @param path путь к файлу журнала
+     * @param handler обработчик записей
+     * @return количество воспроизведенных записей
+     */
+    static int replay(Path path, EntryHandler handler) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long fileSize = channel.size();
+            boolean checksummed = readHeader(channel);
+            long validLength = checksummed ? FILE_HEADER_SIZE : 0;
+            int headerSize = checksummed ? ENTRY_HEADER_SIZE : LEGACY_ENTRY_HEADER_SIZE;
+            channel.position(validLength);
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Channels.newInputStream(channel)));
+            int count = 0;
+
+            while (true) {
+                int operation = in.read();
+                if (operation < 0) {
+                    break;
+                }
+                if (operation < UPSERT || operation > HISTORY_CLEAR) {
+                    break;
+                }
+
+                byte[] payload;
+                try {
+                    int length = in.readInt();
+                    int crc = checksummed ? in.readInt() : 0;
+                    if (length < 0 || length > fileSize - validLength - headerSize) {
+                        break;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    if (checksummed && crc != checksum((byte) operation, payload)) {
+                        System.err.println("Journal " + path + " has a checksum mismatch at offset " + validLength);
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+
+                handler.accept((byte) operation, payload);
+                validLength += headerSize + payload.length;
+                count++;
+            }
+
+            if (validLength < fileSize) {
+                if (checksummed && hasEntryAfter(channel, validLength)) {
+                    Path copy = path.resolveSibling(path.getFileName() + ".corrupt");
+                    Files.copy(path, copy, StandardCopyOption.REPLACE_EXISTING);
+                    System.err.println("Damaged journal copied to: " + copy.toAbsolutePath());
+                }
+                System.err.println("Journal " + path + " has a broken tail, truncating "
+                        + (fileSize - validLength) + " bytes");
+                channel.truncate(validLength);
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Ищет после места повреждения целую запись с верной контрольной суммой.
+     * Если она есть, испорчена середина файла, а не недописан его хвост
+     * @param channel файл журнала
+     * @param offset начало первой непрочитанной записи
+     */
+    private static boolean hasEntryAfter(FileChannel channel, long offset) throws IOException {
+        long remaining = channel.size() - offset;
+        if (remaining > Integer.MAX_VALUE) {
+            return true;
+        }
+        ByteBuffer rest = ByteBuffer.allocate((int) remaining);
+        while (rest.hasRemaining() && channel.read(rest, offset + rest.position()) >= 0) {
+            // Читаем остаток файла целиком
+        }
+        byte[] bytes = rest.array();
+        int limit = rest.position();
+        for (int start = 1; start + ENTRY_HEADER_SIZE <= limit; start++) {
+            byte operation = bytes[start];
+            if (operation < UPSERT || operation > HISTORY_CLEAR) {
+                continue;
+            }
+            int length = rest.getInt(start + 1);
+            if (length < 0 || length > limit - start - ENTRY_HEADER_SIZE) {
+                continue;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(operation);
+            crc.update(bytes, start + ENTRY_HEADER_SIZE, length);
+            if ((int) crc.getValue() == rest.getInt(start + 5)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Сбрасывает на диск содержимое файла (например, перед его атомарным переименованием)
+     * @param path путь к файлу
+     */
+    static void syncFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Сбрасывает на диск каталог файла, чтобы переименование пережило сбой питания.
+     * На платформах, где каталог нельзя открыть (Windows), ничего не делает
+     * @param path путь к файлу в каталоге
+     */
+    static void syncDirectory(Path path) {
+        Path directory = path.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Синхронизация каталога не поддерживается
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package org.example.carjournal.dao;
+
+import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.model.RecordStatus;
+import org.example.carjournal.model.RecordType;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Запрос записей: условия выборки, порядок, ограничение количества и набор полей.
+ * <p>
+ * Условия - диапазоны даты, срока выполнения и пробега и допустимые типы и статусы -
+ * объединяются по "И", границы диапазонов включаются, незаданная граница не ограничивает
+ * выборку. Хранилища выполняют запрос сами: используют индексы, проверяют поля
+ * без разбора всей записи и читают только запрошенные поля.
+ * <p>
+ * Пример: {@code RecordQuery.builder().mileageBetween(60000.0, 90000.0)
+ * .types(RecordType.MAINTENANCE).sortBy(RecordQuery.Sort.DATE_DESC).limit(10).build()}.
+ */
+public final class RecordQuery {
+    /**
+     * Порядок результатов; записи без значения поля идут последними
+     */
+    public enum Sort {
+        /**
+         * Порядок, в котором записи удобнее всего выдать хранилищу
+         */
+        NONE(null),
+        DATE_ASC(Comparator.comparing(CarRecord::getDate, Comparator.nullsLast(Comparator.naturalOrder()))),
+        DATE_DESC(Comparator.comparing(CarRecord::getDate, Comparator.nullsLast(Comparator.reverseOrder()))),
+        DUE_DATE_ASC(Comparator.comparing(CarRecord::getDueDate, Comparator.nullsLast(Comparator.naturalOrder()))),
+        MILEAGE_ASC(Comparator.comparingDouble(CarRecord::getMileage)),
+        MILEAGE_DESC(Comparator.comparingDouble(CarRecord::getMileage).reversed()),
+        COST_DESC(Comparator.comparingDouble(CarRecord::getCost).reversed());
+
+        private final Comparator<CarRecord> comparator;
+
+        Sort(Comparator<CarRecord> comparator) {
+            this.comparator = comparator;
+        }
+
+        /**
+         * @return сравнение записей или null для NONE
+         */
+        public Comparator<CarRecord> comparator() {
+            return comparator;
+        }
+    }
+
+    /**
+     * Поля записи, которые можно запросить. Идентификатор, тип, статус,
+     * приоритет, числовые поля и даты читаются всегда
+     */
+    public enum Field {
+        TITLE,
+        DESCRIPTION,
+        HISTORY,
+        VEHICLE
+    }
+
+    private final Set<RecordType> types;
+    private final Set<RecordStatus> statuses;
+    private final LocalDate dateFrom;
+    private final LocalDate dateTo;
+    private final LocalDate dueDateFrom;
+    private final LocalDate dueDateTo;
+    private final Double mileageFrom;
+    private final Double mileageTo;
+    private final Sort sort;
+    private final int limit;
+    private final Set<Field> fields;
+
+    private RecordQuery(Builder builder) {
+        this.types = builder.types == null ? null : Collections.unmodifiableSet(EnumSet.copyOf(builder.types));
+        this.statuses = builder.statuses == null ? null : Collections.unmodifiableSet(EnumSet.copyOf(builder.statuses));
+        this.dateFrom = builder.dateFrom;
+        this.dateTo = builder.dateTo;
+        this.dueDateFrom = builder.dueDateFrom;
+        this.dueDateTo = builder.dueDateTo;
+        this.mileageFrom = builder.mileageFrom;
+        this.mileageTo = builder.mileageTo;
+        this.sort = builder.sort;
+        this.limit = builder.limit;
+        this.fields = builder.fields == null ? null : Collections.unmodifiableSet(EnumSet.copyOf(builder.fields));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return допустимые типы или null, если тип не ограничен
+     */
+    public Set<RecordType> getTypes() { return types; }
+
+    /**
+     * @return допустимые статусы или null, если статус не ограничен
+     */
+    public Set<RecordStatus> getStatuses() { return statuses; }
+
+    public LocalDate getDateFrom() { return dateFrom; }
+    public LocalDate getDateTo() { return dateTo; }
+    public LocalDate getDueDateFrom() { return dueDateFrom; }
+    public LocalDate getDueDateTo() { return dueDateTo; }
+    public Double getMileageFrom() { return mileageFrom; }
+    public Double getMileageTo() { return mileageTo; }
+    public Sort getSort() { return sort; }
+
+    /**
+     * @return наибольшее количество результатов ({@link Integer#MAX_VALUE} - без ограничения)
+     */
+    public int getLimit() { return limit; }
+
+    /**
+     * Проверяет, нужно ли поле в результатах. Хранилище может заполнить
+     * и незапрошенные поля, если это ему ничего не стоит
+     * @param field поле записи
+     * @return true, если поле запрошено
+     */
+    public boolean includes(Field field) {
+        return fields == null || fields.contains(field);
+    }
+
+    boolean hasDateRange() {
+        return dateFrom != null || dateTo != null;
+    }
+
+    boolean hasDueDateRange() {
+        return dueDateFrom != null || dueDateTo != null;
+    }
+
+    boolean hasMileageRange() {
+        return mileageFrom != null || mileageTo != null;
+    }
+
+    /**
+     * Проверяет запись на соответствие всем условиям
+     * @param record проверяемая запись
+     * @return true, если запись подходит
+     */
+    public boolean matches(CarRecord record) {
+        return (types == null || types.contains(record.getType()))
+                && (statuses == null || statuses.contains(record.getStatus()))
+                && (!hasDateRange() || inRange(record.getDate(), dateFrom, dateTo))
+                && (!hasDueDateRange() || inRange(record.getDueDate(), dueDateFrom, dueDateTo))
+                && matchesMileage(record.getMileage());
+    }
+
+    boolean matchesMileage(double mileage) {
+        return (mileageFrom == null || mileage >= mileageFrom) && (mileageTo == null || mileage <= mileageTo);
+    }
+
+    /**
+     * Упорядочивает и ограничивает поток уже отобранных записей
+     * @param records записи, удовлетворяющие условиям
+     * @return результаты запроса
+     */
+    Stream<CarRecord> orderAndLimit(Stream<CarRecord> records) {
+        if (sort.comparator() != null) {
+            records = records.sorted(sort.comparator());
+        }
+        return limit == Integer.MAX_VALUE ? records : records.limit(limit);
+    }
+
+    /**
+     * Проверка даты; запись без даты не попадает ни в один диапазон
+     */
+    static boolean inRange(LocalDate value, LocalDate from, LocalDate to) {
+        return value != null && (from == null || !value.isBefore(from)) && (to == null || !value.isAfter(to));
+    }
+
+    /**
+     * Построитель условий выборки
+     */
+    public static final class Builder {
+        private Set<RecordType> types;
+        private Set<RecordStatus> statuses;
+        private LocalDate dateFrom;
+        private LocalDate dateTo;
+        private LocalDate dueDateFrom;
+        private LocalDate dueDateTo;
+        private Double mileageFrom;
+        private Double mileageTo;
+        private Sort sort = Sort.NONE;
+        private int limit = Integer.MAX_VALUE;
+        private Set<Field> fields;
+
+        private Builder() {
+        }
+
+        /**
+         * Ограничивает выборку указанными типами
+         */
+        public Builder types(RecordType... types) {
+            this.types = EnumSet.noneOf(RecordType.class);
+            this.types.addAll(Arrays.asList(types));
+            return this;
+        }
+
+        /**
+         * Ограничивает выборку указанными статусами
+         */
+        public Builder statuses(RecordStatus... statuses) {
+            this.statuses = EnumSet.noneOf(RecordStatus.class);
+            this.statuses.addAll(Arrays.asList(statuses));
+            return this;
+        }
+
+        /**
+         * @param from первая дата операции или null
+         * @param to последняя дата операции или null
+         */
+        public Builder dateBetween(LocalDate from, LocalDate to) {
+            this.dateFrom = from;
+            this.dateTo = to;
+            return this;
+        }
+
+        /**
+         * @param from первый срок выполнения или null
+         * @param to последний срок выполнения или null
+         */
+        public Builder dueDateBetween(LocalDate from, LocalDate to) {
+            this.dueDateFrom = from;
+            this.dueDateTo = to;
+            return this;
+        }
+
+        /**
+         * @param from наименьший пробег или null
+         * @param to наибольший пробег или null
+         */
+        public Builder mileageBetween(Double from, Double to) {
+            this.mileageFrom = from;
+            this.mileageTo = to;
+            return this;
+        }
+
+        public Builder sortBy(Sort sort) {
+            this.sort = sort;
+            return this;
+        }
+
+        /**
+         * @param limit наибольшее количество результатов
+         */
+        public Builder limit(int limit) {
+            if (limit < 0) {
+                throw new IllegalArgumentException("Limit must not be negative: " + limit);
+            }
+            this.limit = limit;
+            return this;
+        }
+
+        /**
+         * Ограничивает результаты указанными полями (кроме всегда читаемых)
+         */
+        public Builder fields(Field... fields) {
+            this.fields = EnumSet.noneOf(Field.class);
+            this.fields.addAll(Arrays.asList(fields));
+            return this;
+        }
+
+        public RecordQuery build() {
+            return new RecordQuery(this);
+        }
+    }
+}
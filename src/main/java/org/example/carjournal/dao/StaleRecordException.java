@@ -0,0 +1,49 @@
+package org.example.carjournal.dao;
+
+import org.example.carjournal.model.CarRecord;
+
+/**
+ * Исключение при попытке сохранить запись, которую уже изменили или удалили
+ * после того, как она была прочитана
+ */
+public class StaleRecordException extends RuntimeException {
+    /**
+     * Версия, сообщаемая для удаленной записи
+     */
+    public static final long DELETED = -1;
+
+    private static final long serialVersionUID = 1L;
+
+    private final String recordId;
+    private final long expectedVersion;
+    private final long actualVersion;
+
+    public StaleRecordException(String recordId, long expectedVersion, long actualVersion) {
+        super(actualVersion == DELETED
+                ? "Record " + recordId + " was deleted"
+                : "Record " + recordId + " was modified: expected version " + expectedVersion
+                        + ", stored version " + actualVersion);
+        this.recordId = recordId;
+        this.expectedVersion = expectedVersion;
+        this.actualVersion = actualVersion;
+    }
+
+    /**
+     * Проверяет, что обновление основано на сохраненной версии записи
+     * @param stored запись в хранилище или null, если ее нет
+     * @param updated новая версия записи
+     * @throws StaleRecordException если версии не совпадают или запись удалена
+     */
+    static void check(CarRecord stored, CarRecord updated) {
+        if (stored == null) {
+            throw new StaleRecordException(updated.getId(), updated.getVersion(), DELETED);
+        }
+        if (stored.getVersion() != updated.getVersion()) {
+            throw new StaleRecordException(updated.getId(), updated.getVersion(), stored.getVersion());
+        }
+    }
+
+    public String getRecordId() { return recordId; }
+    public long getExpectedVersion() { return expectedVersion; }
+    public long getActualVersion() { return actualVersion; }
+}
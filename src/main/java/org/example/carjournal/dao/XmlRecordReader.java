@@ -0,0 +1,89 @@
+package org.example.carjournal.dao;
+
+import org.example.carjournal.model.CarRecord;
+import com.fasterxml.jackson.core.JacksonException;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Потоковое чтение XML-файла с записями на основе StAX-парсера (Woodstox).
+ * Элементы {@link CarRecord} десериализуются по одному, поэтому в памяти
+ * никогда не строится дерево всего документа. Если конец файла поврежден,
+ * записи, прочитанные до места повреждения, не теряются.
+ */
+public class XmlRecordReader {
+    private final XmlMapper xmlMapper;
+    private final Path path;
+
+    /**
+     * Результат чтения файла
+     */
+    public static final class Result {
+        private final int count;
+        private final String error;
+
+        Result(int count, String error) {
+            this.count = count;
+            this.error = error;
+        }
+
+        /**
+         * @return количество успешно прочитанных записей
+         */
+        public int getCount() { return count; }
+
+        /**
+         * @return true, если файл прочитан до конца без ошибок
+         */
+        public boolean isComplete() { return error == null; }
+
+        /**
+         * @return описание ошибки, на которой чтение было прервано, или null
+         */
+        public String getError() { return error; }
+    }
+
+    /**
+     * @param xmlMapper настроенный маппер для десериализации записей
+     * @param path путь к XML-файлу со списком записей
+     */
+    public XmlRecordReader(XmlMapper xmlMapper, Path path) {
+        this.xmlMapper = xmlMapper;
+        this.path = path;
+    }
+
+    /**
+     * Последовательно читает все записи файла
+     * @param consumer получатель прочитанных записей
+     * @return результат чтения
+     */
+    public Result forEach(Consumer<CarRecord> consumer) throws IOException {
+        int count = 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            XMLStreamReader reader = xmlMapper.getFactory().getXMLInputFactory().createXMLStreamReader(in);
+            try {
+                // Переходим к корневому элементу списка
+                reader.nextTag();
+                while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                    // После чтения парсер стоит на закрывающем теге элемента
+                    consumer.accept(xmlMapper.readValue(reader, CarRecord.class));
+                    count++;
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException | JacksonException e) {
+            return new Result(count, e.getMessage());
+        }
+        return new Result(count, null);
+    }
+}
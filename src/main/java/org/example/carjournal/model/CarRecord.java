@@ -79,6 +79,17 @@ public class CarRecord {
      */
     @JsonProperty("history")
     private List<HistoryEntry> history;
+    /**
+     * Версия записи, увеличивается хранилищем при каждом обновлении.
+     * Используется для обнаружения конфликтующих изменений.
+     */
+    @JsonProperty("version")
+    private long version;
+    /**
+     * Идентификатор автомобиля, к которому относится запись (null - не указан)
+     */
+    @JsonProperty("vehicleId")
+    private String vehicleId;
 
     public CarRecord() {
         this.history = new ArrayList<>();
@@ -126,6 +137,41 @@ public class CarRecord {
 
     public List<HistoryEntry> getHistory() { return history; }
     public void setHistory(List<HistoryEntry> history) { this.history = history; }
+
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
+    public String getVehicleId() { return vehicleId; }
+    public void setVehicleId(String vehicleId) { this.vehicleId = vehicleId; }
+
+    /**
+     * Создает независимую копию записи (включая историю изменений)
+     * @return копия записи с той же версией
+     */
+    public CarRecord copy() {
+        CarRecord copy = new CarRecord();
+        copy.id = id;
+        copy.title = title;
+        copy.description = description;
+        copy.type = type;
+        copy.cost = cost;
+        copy.mileage = mileage;
+        copy.date = date;
+        copy.dueDate = dueDate;
+        copy.status = status;
+        copy.priority = priority;
+        copy.fuelAmount = fuelAmount;
+        copy.fuelPrice = fuelPrice;
+        copy.history = new ArrayList<>();
+        if (history != null) {
+            for (HistoryEntry entry : history) {
+                copy.history.add(new HistoryEntry(entry.getDate(), entry.getAction()));
+            }
+        }
+        copy.version = version;
+        copy.vehicleId = vehicleId;
+        return copy;
+    }
     /**
      * Добавляет запись в историю изменений
      * @param action Описание выполненного действия
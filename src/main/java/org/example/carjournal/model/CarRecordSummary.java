@@ -0,0 +1,71 @@
+package org.example.carjournal.model;
+
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Краткое представление записи для списков: только поля, которые показывает таблица.
+ * Описание и история не загружаются; полная запись читается по идентификатору,
+ * когда она действительно нужна (например, при выборе строки).
+ * <p>
+ * Представления неизменяемы и равны, если совпадают идентификатор и версия записи.
+ */
+public final class CarRecordSummary {
+    private final String id;
+    private final long version;
+    private final String title;
+    private final RecordType type;
+    private final double cost;
+    private final LocalDate date;
+    private final RecordStatus status;
+
+    public CarRecordSummary(String id, long version, String title, RecordType type,
+                            double cost, LocalDate date, RecordStatus status) {
+        this.id = id;
+        this.version = version;
+        this.title = title;
+        this.type = type;
+        this.cost = cost;
+        this.date = date;
+        this.status = status;
+    }
+
+    /**
+     * @param record полная запись
+     * @return краткое представление записи
+     */
+    public static CarRecordSummary of(CarRecord record) {
+        return new CarRecordSummary(record.getId(), record.getVersion(), record.getTitle(), record.getType(),
+                record.getCost(), record.getDate(), record.getStatus());
+    }
+
+    public String getId() { return id; }
+    public long getVersion() { return version; }
+    public String getTitle() { return title; }
+    public RecordType getType() { return type; }
+    public double getCost() { return cost; }
+    public LocalDate getDate() { return date; }
+    public RecordStatus getStatus() { return status; }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof CarRecordSummary)) {
+            return false;
+        }
+        CarRecordSummary summary = (CarRecordSummary) other;
+        return version == summary.version && Objects.equals(id, summary.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, version);
+    }
+
+    @Override
+    public String toString() {
+        return title;
+    }
+}
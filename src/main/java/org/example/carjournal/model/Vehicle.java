@@ -0,0 +1,45 @@
+package org.example.carjournal.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Автомобиль, к которому относятся записи журнала
+ */
+public class Vehicle {
+    /**
+     * Уникальный идентификатор автомобиля
+     */
+    @JsonProperty("id")
+    private String id;
+    /**
+     * Название автомобиля (например, "Lada Vesta")
+     */
+    @JsonProperty("name")
+    private String name;
+    /**
+     * Государственный регистрационный номер
+     */
+    @JsonProperty("licensePlate")
+    private String licensePlate;
+
+    public Vehicle() {}
+
+    public Vehicle(String name, String licensePlate) {
+        this.name = name;
+        this.licensePlate = licensePlate;
+    }
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public String getLicensePlate() { return licensePlate; }
+    public void setLicensePlate(String licensePlate) { this.licensePlate = licensePlate; }
+
+    @Override
+    public String toString() {
+        return licensePlate == null || licensePlate.isBlank() ? name : name + " (" + licensePlate + ")";
+    }
+}
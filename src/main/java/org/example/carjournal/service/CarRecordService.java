@@ -1,27 +1,153 @@
 package org.example.carjournal.service;
 
 import org.example.carjournal.dao.CarRecordDAO;
+import org.example.carjournal.dao.HistoryLog;
+import org.example.carjournal.dao.PageRequest;
+import org.example.carjournal.dao.RecordQuery;
+import org.example.carjournal.dao.StaleRecordException;
 import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.model.CarRecordSummary;
+import org.example.carjournal.model.HistoryEntry;
 import org.example.carjournal.model.RecordStatus;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 /**
  * Сервисный слой для работы с записями об операциях с автомобилем.
  * Содержит бизнес-логику приложения.
  */
 public class CarRecordService {
+    /**
+     * Количество попыток сохранить изменение при конфликте версий
+     */
+    private static final int MAX_UPDATE_ATTEMPTS = 5;
+    private static final String OVERDUE_ACTION = "Статус изменен на 'В процессе' - просрочено";
+
     private final CarRecordDAO carRecordDAO;
     /**
-     * Конструктор сервиса
+     * Отдельное хранилище истории изменений или null, если история хранится внутри записей
+     */
+    private final HistoryLog history;
+    private final RecordStatistics statistics = new RecordStatistics();
+    private final SearchIndex searchIndex = new SearchIndex();
+    private final ColumnarRecordStore columns = new ColumnarRecordStore();
+    private final List<RecordChangeListener> listeners = new CopyOnWriteArrayList<>();
+    /**
+     * Запись в хранилище и обновление производных структур (колоночная копия,
+     * статистика, поисковый индекс, журнал истории) выполняются под этой блокировкой,
+     * чтобы параллельное изменение или фоновая пометка просроченных записей
+     * не перезаписали их устаревшей версией и не вернули в них удаленную запись
+     */
+    private final Object writeLock = new Object();
+    /**
+     * Количество повторов изменений после конфликта версий
+     */
+    private final AtomicLong conflictRetries = new AtomicLong();
+    /**
+     * Конструктор сервиса; история изменений хранится внутри записей
      * @param carRecordDAO объект для доступа к данным
      */
     public CarRecordService(CarRecordDAO carRecordDAO) {
         this.carRecordDAO = carRecordDAO;
+        this.history = null;
+        loadRecords();
+    }
+    /**
+     * Конструктор сервиса с отдельным хранилищем истории изменений.
+     * История, сохраненная внутри записей (прежний формат), переносится в журнал
+     * истории и удаляется из записи при ее следующем сохранении.
+     * @param carRecordDAO объект для доступа к данным
+     * @param history журнал истории изменений записей
+     */
+    public CarRecordService(CarRecordDAO carRecordDAO, HistoryLog history) {
+        this.carRecordDAO = carRecordDAO;
+        this.history = Objects.requireNonNull(history, "history");
+        loadRecords();
+    }
+
+    private void loadRecords() {
+        for (CarRecord record : carRecordDAO.findAll()) {
+            statistics.upsert(record);
+            searchIndex.index(record);
+            columns.upsert(record);
+            if (history != null && !history.contains(record.getId())) {
+                importHistory(record.getId(), record.getHistory());
+            }
+        }
+    }
+
+    private void importHistory(String id, List<HistoryEntry> entries) {
+        if (entries != null) {
+            entries.forEach(entry -> history.append(id, entry));
+        }
+    }
+
+    /**
+     * Добавляет в отдельное хранилище истории запись о сохраненном изменении;
+     * если история хранится внутри записей, она уже добавлена в запись
+     */
+    private void appendHistory(String id, String action) {
+        if (history != null) {
+            history.append(id, new HistoryEntry(LocalDate.now(), action));
+        }
+    }
+
+    /**
+     * Подготавливает запись к сохранению: без отдельного хранилища действие
+     * добавляется в историю записи, иначе история в записи не хранится
+     */
+    private void recordHistory(CarRecord record, String action) {
+        if (history == null) {
+            record.addHistoryEntry(action);
+        } else {
+            record.setHistory(new ArrayList<>());
+        }
+    }
+
+    /**
+     * @return future, завершающийся после сохранения на диск изменений записей
+     *         и их истории
+     */
+    private CompletableFuture<Void> flush() {
+        CompletableFuture<Void> records = carRecordDAO.flush();
+        return history == null ? records : CompletableFuture.allOf(records, history.flush());
+    }
+    /**
+     * Подписывает получателя на события изменения записей
+     * @param listener получатель событий
+     */
+    public void addChangeListener(RecordChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(RecordChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void fireChange(RecordChangeEvent.Type type, List<String> ids, List<CarRecord> records) {
+        if (ids.isEmpty() || listeners.isEmpty()) {
+            return;
+        }
+        RecordChangeEvent event = new RecordChangeEvent(type, ids, records);
+        for (RecordChangeListener listener : listeners) {
+            listener.onRecordsChanged(event);
+        }
+    }
+
+    private void fireChange(RecordChangeEvent.Type type, CarRecord record) {
+        fireChange(type, Collections.singletonList(record.getId()), Collections.singletonList(record));
     }
+
     /**
      * Получает все записи об операциях
      * @return список всех записей
@@ -29,6 +155,29 @@ public class CarRecordService {
     public List<CarRecord> getAllRecords() {
         return carRecordDAO.findAll();
     }
+    /**
+     * @return количество записей в журнале
+     */
+    public int countRecords() {
+        return carRecordDAO.count();
+    }
+    /**
+     * Получает одну страницу записей
+     * @param page смещение, размер и порядок страницы
+     * @return записи страницы
+     */
+    public List<CarRecord> getRecordsPage(PageRequest page) {
+        return carRecordDAO.findPage(page);
+    }
+    /**
+     * Получает одну страницу кратких представлений записей для списков;
+     * описание и история записей при этом не загружаются
+     * @param page смещение, размер и порядок страницы
+     * @return представления записей страницы
+     */
+    public List<CarRecordSummary> getSummaryPage(PageRequest page) {
+        return carRecordDAO.findSummaryPage(page);
+    }
     /**
      * Находит запись по идентификатору
      * @param id уникальный идентификатор записи
@@ -38,27 +187,120 @@ public class CarRecordService {
         return carRecordDAO.findById(id);
     }
     /**
-     * Добавляет новую запись об операции
+     * Получает историю изменений записи
+     * @param id идентификатор записи
+     * @return записи истории от старых к новым
+     */
+    public List<HistoryEntry> getHistory(String id) {
+        if (history != null) {
+            return history.history(id);
+        }
+        return carRecordDAO.findById(id)
+                .map(CarRecord::getHistory)
+                .map(entries -> (List<HistoryEntry>) new ArrayList<>(entries))
+                .orElseGet(ArrayList::new);
+    }
+    /**
+     * Добавляет новую запись об операции.
+     * Запись сразу становится видна при чтении, а сохранение на диск
+     * выполняется в фоне. При отдельном хранилище истории история, переданная
+     * в записи, переносится в него.
      * @param record объект записи для добавления
+     * @return future, завершающийся после сохранения записи на диск
      */
-    public void addRecord(CarRecord record) {
-        record.addHistoryEntry("Запись создана");
-        carRecordDAO.save(record);
+    public CompletableFuture<Void> addRecord(CarRecord record) {
+        List<HistoryEntry> initialHistory = record.getHistory();
+        recordHistory(record, "Запись создана");
+        synchronized (writeLock) {
+            carRecordDAO.save(record);
+            columns.upsert(record);
+            if (history != null) {
+                importHistory(record.getId(), initialHistory);
+            }
+            appendHistory(record.getId(), "Запись создана");
+            statistics.upsert(record);
+            searchIndex.index(record);
+        }
+        fireChange(RecordChangeEvent.Type.ADDED, record);
+        return flush();
     }
     /**
      * Обновляет существующую запись
-     * @param record объект записи с обновленными данными
+     * @param record объект записи с обновленными данными и версией,
+     *               на основе которой они получены
+     * @return future, завершающийся после сохранения изменений на диск
+     * @throws StaleRecordException если запись изменили или удалили после чтения
+     */
+    public CompletableFuture<Void> updateRecord(CarRecord record) {
+        recordHistory(record, "Запись обновлена");
+        synchronized (writeLock) {
+            carRecordDAO.update(record);
+            columns.upsert(record);
+            appendHistory(record.getId(), "Запись обновлена");
+            statistics.upsert(record);
+            searchIndex.index(record);
+        }
+        fireChange(RecordChangeEvent.Type.UPDATED, record);
+        return flush();
+    }
+    /**
+     * Изменяет запись, повторяя попытку при конфликте версий: запись
+     * перечитывается, изменение применяется к ее копии, и копия сохраняется
+     * @param id идентификатор записи
+     * @param modification изменение записи; может быть вызвано несколько раз
+     * @return future, завершающийся после сохранения изменений на диск
+     * @throws StaleRecordException если запись удалена или конфликты не прекратились
+     */
+    public CompletableFuture<Void> modifyRecord(String id, Consumer<CarRecord> modification) {
+        return retryOnConflict(() -> {
+            CarRecord current = carRecordDAO.findById(id).orElseThrow(() -> new StaleRecordException(
+                    id, StaleRecordException.DELETED, StaleRecordException.DELETED));
+            CarRecord copy = current.copy();
+            modification.accept(copy);
+            return updateRecord(copy);
+        });
+    }
+
+    /**
+     * Выполняет операцию, повторяя ее, пока хранилище отклоняет изменения
+     * как устаревшие
+     */
+    private <T> T retryOnConflict(Supplier<T> operation) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return operation.get();
+            } catch (StaleRecordException e) {
+                if (attempt == MAX_UPDATE_ATTEMPTS || e.getExpectedVersion() == StaleRecordException.DELETED) {
+                    throw e;
+                }
+                conflictRetries.incrementAndGet();
+            }
+        }
+    }
+    /**
+     * Возвращает количество повторов изменений после конфликта версий
+     * с момента создания сервиса
      */
-    public void updateRecord(CarRecord record) {
-        record.addHistoryEntry("Запись обновлена");
-        carRecordDAO.update(record);
+    public long getConflictRetries() {
+        return conflictRetries.get();
     }
     /**
      * Удаляет запись по идентификатору
      * @param id уникальный идентификатор записи для удаления
+     * @return future, завершающийся после сохранения удаления на диск
      */
-    public void deleteRecord(String id) {
-        carRecordDAO.delete(id);
+    public CompletableFuture<Void> deleteRecord(String id) {
+        synchronized (writeLock) {
+            carRecordDAO.delete(id);
+            columns.remove(id);
+            if (history != null) {
+                history.remove(id);
+            }
+            statistics.remove(id);
+            searchIndex.remove(id);
+        }
+        fireChange(RecordChangeEvent.Type.REMOVED, Collections.singletonList(id), Collections.emptyList());
+        return flush();
     }
 
     /**
@@ -80,87 +322,159 @@ public class CarRecordService {
     }
 
     /**
-     * Рассчитывает стоимость владения автомобилем в рублях за километр
+     * Рассчитывает стоимость владения автомобилем в рублях за километр.
+     * Значение берется из инкрементально обновляемой статистики.
      * @return стоимость в руб/км
      */
     public double calculateCostPerKm() {
-        List<CarRecord> records = carRecordDAO.findAll();
-        if (records.isEmpty()) return 0.0;
-
-        double totalCost = records.stream()
-                .mapToDouble(CarRecord::getCost)
-                .sum();
-
-        double maxMileage = records.stream()
-                .mapToDouble(CarRecord::getMileage)
-                .max()
-                .orElse(1.0);
-
-        return totalCost / maxMileage;
+        return statistics.costPerKm();
     }
 
 
     /**
-     * Находит аномалии расхода топлива на основе записей о заправках
+     * Находит аномалии расхода топлива на основе записей о заправках.
+     * Аномалией считается заправка, при которой расход относительно предыдущей
+     * по пробегу заправки больше 20 л/100км (меньше 5 км/л).
      * @return список записей с аномальным расходом топлива
      */
     public List<CarRecord> findFuelAnomalies() {
-        List<CarRecord> fuelRecords = carRecordDAO.findAll().stream()
-                .filter(record -> record.getType().name().equals("FUEL"))
-                .sorted((r1, r2) -> Double.compare(r1.getMileage(), r2.getMileage()))
-                .collect(Collectors.toList());
-
         List<CarRecord> anomalies = new ArrayList<>();
-
-        for (int i = 1; i < fuelRecords.size(); i++) {
-            CarRecord current = fuelRecords.get(i);
-            CarRecord previous = fuelRecords.get(i - 1);
-
-            double distance = current.getMileage() - previous.getMileage();
-            double fuelEfficiency = distance / current.getFuelAmount();
-
-            // Если расход больше 20 л/100км - считаем аномалией
-            if (fuelEfficiency < 5.0) { // 5 км/л = 20 л/100км
-                anomalies.add(current);
-            }
+        for (String id : statistics.anomalyIds()) {
+            carRecordDAO.findById(id).ifPresent(anomalies::add);
         }
-
         return anomalies;
     }
     /**
-     * Выполняет поиск записей по ключевым словам
+     * Рассчитывает итоги по каждому автомобилю за каждый период: затраты
+     * по типам операций, расход топлива и стоимость километра
+     * @param period длительность периода
+     * @return итоги, упорядоченные по автомобилю и началу периода
+     */
+    public List<FleetAnalytics.Summary> analyzeFleet(FleetAnalytics.Period period) {
+        return FleetAnalytics.analyze(columns, period);
+    }
+    /**
+     * Выполняет поиск записей по ключевым словам.
+     * Каждое слово запроса ищется как начало слова в названии, описании
+     * или типе записи; результаты упорядочены по релевантности.
      * @param query строка поиска
      * @return список найденных записей
      */
     public List<CarRecord> searchRecords(String query) {
-        return carRecordDAO.findAll().stream()
-                .filter(record -> containsIgnoreCase(record.getTitle(), query) ||
-                        containsIgnoreCase(record.getDescription(), query) ||
-                        containsIgnoreCase(record.getType().getDisplayName(), query))
-                .collect(Collectors.toList());
+        List<String> ids = searchIndex.search(query);
+        if (ids == null) {
+            return carRecordDAO.findAll();
+        }
+
+        List<CarRecord> found = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            carRecordDAO.findById(id).ifPresent(found::add);
+        }
+        return found;
+    }
+
+    /**
+     * Выполняет поиск по ключевым словам, не обращаясь к хранилищу.
+     * Может вызываться из фонового потока.
+     * @param query строка поиска
+     * @return идентификаторы найденных записей по убыванию релевантности;
+     *         для запроса без слов - идентификаторы всех записей
+     */
+    public List<String> searchRecordIds(String query) {
+        List<String> ids = searchIndex.search(query);
+        return ids != null ? ids : searchIndex.allIds();
+    }
+
+    /**
+     * Проверяет, попадает ли запись в результаты поиска по ключевым словам.
+     * Позволяет обновлять показанные результаты при изменении записи без повторного поиска
+     * @param id идентификатор записи
+     * @param query строка поиска
+     * @return true, если запись содержит все слова запроса
+     */
+    public boolean matchesSearch(String id, String query) {
+        return searchIndex.matches(id, query);
+    }
+
+    /**
+     * Находит записи по диапазонам даты, срока и пробега, типам и статусам
+     * @param query условия, порядок, ограничение количества и набор полей
+     * @return список найденных записей
+     */
+    public List<CarRecord> findRecords(RecordQuery query) {
+        return carRecordDAO.find(query);
     }
 
     public List<CarRecord> filterByStatus(RecordStatus status) {
-        return carRecordDAO.findByStatus(status.name());
+        return carRecordDAO.find(RecordQuery.builder().statuses(status).build());
     }
     /**
-     * Обновляет статусы записей (например, помечает просроченные)
+     * Обновляет статусы записей (например, помечает просроченные).
+     * Просматриваются только активные записи с истекшим сроком,
+     * а все изменения сохраняются одной пакетной операцией. Если какую-либо
+     * из записей успели изменить, выборка повторяется.
+     * @return future, завершающийся после сохранения изменений на диск
      */
-    public void updateStatuses() {
-        List<CarRecord> records = carRecordDAO.findAll();
+    public CompletableFuture<Void> updateStatuses() {
         LocalDate today = LocalDate.now();
+        return markOverdue(() -> carRecordDAO.findDueBefore(RecordStatus.ACTIVE, today), today);
+    }
 
-        for (CarRecord record : records) {
-            if (record.getDueDate() != null && record.getDueDate().isBefore(today)
-                    && record.getStatus() == RecordStatus.ACTIVE) {
-                record.setStatus(RecordStatus.PENDING);
-                record.addHistoryEntry("Статус изменен на 'В процессе' - просрочено");
-                carRecordDAO.update(record);
+    /**
+     * Переводит указанные записи в статус "В процессе", если они все еще
+     * активны и их срок истек
+     * @param ids идентификаторы записей
+     * @param today текущая дата
+     * @return future, завершающийся после сохранения изменений на диск
+     */
+    CompletableFuture<Void> markOverdue(Collection<String> ids, LocalDate today) {
+        return markOverdue(() -> {
+            List<CarRecord> candidates = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                carRecordDAO.findById(id).ifPresent(candidates::add);
             }
-        }
+            return candidates;
+        }, today);
     }
 
-    private boolean containsIgnoreCase(String text, String query) {
-        return text != null && text.toLowerCase().contains(query.toLowerCase());
+    private CompletableFuture<Void> markOverdue(Supplier<List<CarRecord>> candidates, LocalDate today) {
+        List<CarRecord> overdue = retryOnConflict(() -> {
+            List<CarRecord> changed = new ArrayList<>();
+            for (CarRecord record : candidates.get()) {
+                if (record.getStatus() != RecordStatus.ACTIVE || record.getDueDate() == null
+                        || !record.getDueDate().isBefore(today)) {
+                    continue;
+                }
+                CarRecord copy = record.copy();
+                copy.setStatus(RecordStatus.PENDING);
+                recordHistory(copy, OVERDUE_ACTION);
+                changed.add(copy);
+            }
+            synchronized (writeLock) {
+                carRecordDAO.updateAll(changed);
+                for (CarRecord record : changed) {
+                    columns.upsert(record);
+                    appendHistory(record.getId(), OVERDUE_ACTION);
+                }
+            }
+            return changed;
+        });
+
+        List<String> ids = new ArrayList<>(overdue.size());
+        for (CarRecord record : overdue) {
+            ids.add(record.getId());
+        }
+        fireChange(RecordChangeEvent.Type.UPDATED, ids, overdue);
+        return flush();
+    }
+    /**
+     * Дожидается сохранения всех изменений и закрывает хранилище.
+     * Вызывается при завершении приложения.
+     */
+    public void close() {
+        carRecordDAO.close();
+        if (history != null) {
+            history.close();
+        }
     }
 }
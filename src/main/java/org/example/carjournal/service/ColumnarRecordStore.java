@@ -0,0 +1,194 @@
+package org.example.carjournal.service;
+
+import org.example.carjournal.model.CarRecord;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Поколоночная копия числовых полей журнала для аналитики.
+ * <p>
+ * Каждое поле хранится в отдельном массиве примитивов: стоимость, пробег и топливо -
+ * в {@code double[]}, даты - номерами дней в {@code int[]}, перечисления - порядковыми
+ * номерами в {@code byte[]}, автомобиль - индексом в словаре. Агрегаты считаются
+ * последовательным проходом по массивам без обращения к объектам записей.
+ * Строки не упорядочены: при удалении на место удаленной строки переносится последняя.
+ * <p>
+ * Изменения выполняются под блокировкой записи, проходы аналитики - под блокировкой чтения.
+ */
+public class ColumnarRecordStore {
+    /**
+     * Значение колонки даты для записей без даты
+     */
+    static final int NO_DATE = Integer.MIN_VALUE;
+    /**
+     * Значение колонок перечислений для незаданных значений
+     */
+    static final byte NO_VALUE = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    final ReadWriteLock lock = new ReentrantReadWriteLock();
+    int size;
+    String[] ids = new String[INITIAL_CAPACITY];
+    double[] cost = new double[INITIAL_CAPACITY];
+    double[] mileage = new double[INITIAL_CAPACITY];
+    double[] fuelAmount = new double[INITIAL_CAPACITY];
+    double[] fuelPrice = new double[INITIAL_CAPACITY];
+    int[] date = new int[INITIAL_CAPACITY];
+    int[] dueDate = new int[INITIAL_CAPACITY];
+    byte[] type = new byte[INITIAL_CAPACITY];
+    byte[] status = new byte[INITIAL_CAPACITY];
+    byte[] priority = new byte[INITIAL_CAPACITY];
+    /**
+     * Индекс автомобиля в {@link #vehicles}; 0 - автомобиль не указан
+     */
+    int[] vehicle = new int[INITIAL_CAPACITY];
+
+    final List<String> vehicles = new ArrayList<>();
+    private final Map<String, Integer> vehicleIndex = new HashMap<>();
+    private final Map<String, Integer> rows = new HashMap<>();
+
+    public ColumnarRecordStore() {
+        vehicles.add(null);
+    }
+
+    /**
+     * Создает хранилище с копией указанных записей
+     * @param records записи журнала
+     */
+    public ColumnarRecordStore(Collection<CarRecord> records) {
+        this();
+        ensureCapacity(records.size());
+        for (CarRecord record : records) {
+            upsert(record);
+        }
+    }
+
+    /**
+     * Добавляет запись или обновляет ее строку
+     * @param record запись журнала
+     */
+    public void upsert(CarRecord record) {
+        lock.writeLock().lock();
+        try {
+            // Записи без идентификатора (еще не сохраненные) всегда получают новую строку
+            Integer existing = record.getId() == null ? null : rows.get(record.getId());
+            int row;
+            if (existing != null) {
+                row = existing;
+            } else {
+                ensureCapacity(size + 1);
+                row = size++;
+                if (record.getId() != null) {
+                    rows.put(record.getId(), row);
+                }
+            }
+            ids[row] = record.getId();
+            cost[row] = record.getCost();
+            mileage[row] = record.getMileage();
+            fuelAmount[row] = record.getFuelAmount();
+            fuelPrice[row] = record.getFuelPrice();
+            date[row] = epochDay(record.getDate());
+            dueDate[row] = epochDay(record.getDueDate());
+            type[row] = ordinal(record.getType());
+            status[row] = ordinal(record.getStatus());
+            priority[row] = ordinal(record.getPriority());
+            vehicle[row] = vehicleIndex(record.getVehicleId());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Удаляет строку записи, перенося на ее место последнюю строку
+     * @param id идентификатор записи
+     */
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer removed = id == null ? null : rows.remove(id);
+            if (removed == null) {
+                return;
+            }
+            int row = removed;
+            int last = --size;
+            if (row != last) {
+                ids[row] = ids[last];
+                cost[row] = cost[last];
+                mileage[row] = mileage[last];
+                fuelAmount[row] = fuelAmount[last];
+                fuelPrice[row] = fuelPrice[last];
+                date[row] = date[last];
+                dueDate[row] = dueDate[last];
+                type[row] = type[last];
+                status[row] = status[last];
+                priority[row] = priority[last];
+                vehicle[row] = vehicle[last];
+                if (ids[row] != null) {
+                    rows.put(ids[row], row);
+                }
+            }
+            ids[last] = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return количество записей
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int vehicleIndex(String vehicleId) {
+        if (vehicleId == null) {
+            return 0;
+        }
+        Integer index = vehicleIndex.get(vehicleId);
+        if (index == null) {
+            index = vehicles.size();
+            vehicles.add(vehicleId);
+            vehicleIndex.put(vehicleId, index);
+        }
+        return index;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= ids.length) {
+            return;
+        }
+        int capacity = Math.max(required, ids.length * 2);
+        ids = Arrays.copyOf(ids, capacity);
+        cost = Arrays.copyOf(cost, capacity);
+        mileage = Arrays.copyOf(mileage, capacity);
+        fuelAmount = Arrays.copyOf(fuelAmount, capacity);
+        fuelPrice = Arrays.copyOf(fuelPrice, capacity);
+        date = Arrays.copyOf(date, capacity);
+        dueDate = Arrays.copyOf(dueDate, capacity);
+        type = Arrays.copyOf(type, capacity);
+        status = Arrays.copyOf(status, capacity);
+        priority = Arrays.copyOf(priority, capacity);
+        vehicle = Arrays.copyOf(vehicle, capacity);
+    }
+
+    private static int epochDay(LocalDate value) {
+        return value == null ? NO_DATE : (int) value.toEpochDay();
+    }
+
+    private static byte ordinal(Enum<?> value) {
+        return value == null ? NO_VALUE : (byte) value.ordinal();
+    }
+}
@@ -0,0 +1,263 @@
+package org.example.carjournal.service;
+
+import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.model.RecordType;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Аналитика по парку автомобилей: затраты по типам операций, расход топлива
+ * и стоимость километра для каждого автомобиля за каждый период.
+ * <p>
+ * Расчет идет по колонкам {@link ColumnarRecordStore}: строки делятся на блоки,
+ * блоки обрабатываются параллельно, и каждый блок накапливает собственную таблицу
+ * "автомобиль, период -> агрегаты", а таблицы блоков затем сливаются. Все агрегаты
+ * (суммы, минимумы и максимумы пробега) объединяются без повторного прохода
+ * по данным, поэтому работа делится между ядрами практически без синхронизации.
+ */
+public final class FleetAnalytics {
+    /**
+     * Количество строк в блоке, обрабатываемом одной задачей
+     */
+    private static final int BLOCK_SIZE = 16384;
+    private static final RecordType[] TYPES = RecordType.values();
+    private static final byte FUEL = (byte) RecordType.FUEL.ordinal();
+
+    /**
+     * Длительность периода, по которому группируются записи
+     */
+    public enum Period {
+        MONTH,
+        YEAR,
+        /**
+         * Все записи автомобиля за все время
+         */
+        ALL;
+
+        /**
+         * @param epochDay номер дня даты записи
+         * @return номер первого дня периода, в который попадает дата
+         *         ({@link ColumnarRecordStore#NO_DATE} для ALL или без даты)
+         */
+        int start(int epochDay) {
+            if (epochDay == ColumnarRecordStore.NO_DATE || this == ALL) {
+                return ColumnarRecordStore.NO_DATE;
+            }
+            LocalDate date = LocalDate.ofEpochDay(epochDay);
+            return (int) (this == MONTH ? date.withDayOfMonth(1) : date.withDayOfYear(1)).toEpochDay();
+        }
+    }
+
+    private FleetAnalytics() {
+    }
+
+    /**
+     * Объединяемые агрегаты одной группы
+     */
+    private static final class Accumulator {
+        final double[] costByType = new double[TYPES.length];
+        double totalCost;
+        double minMileage = Double.POSITIVE_INFINITY;
+        double maxMileage = Double.NEGATIVE_INFINITY;
+        double fuelAmount;
+        /**
+         * Заправка с наименьшим пробегом: ее топливо израсходовано до начала периода
+         */
+        double firstFuelMileage = Double.POSITIVE_INFINITY;
+        double firstFuelAmount;
+        double lastFuelMileage = Double.NEGATIVE_INFINITY;
+
+        void add(double cost, byte type, double mileage, double fuel) {
+            totalCost += cost;
+            if (type >= 0) {
+                costByType[type] += cost;
+            }
+            if (mileage > 0) {
+                minMileage = Math.min(minMileage, mileage);
+                maxMileage = Math.max(maxMileage, mileage);
+            }
+            if (type == FUEL && fuel > 0) {
+                addFuel(mileage, fuel, mileage, fuel);
+            }
+        }
+
+        private void addFuel(double firstMileage, double firstAmount, double lastMileage, double amount) {
+            fuelAmount += amount;
+            if (firstMileage < firstFuelMileage) {
+                firstFuelMileage = firstMileage;
+                firstFuelAmount = firstAmount;
+            }
+            lastFuelMileage = Math.max(lastFuelMileage, lastMileage);
+        }
+
+        Accumulator merge(Accumulator other) {
+            for (int i = 0; i < costByType.length; i++) {
+                costByType[i] += other.costByType[i];
+            }
+            totalCost += other.totalCost;
+            minMileage = Math.min(minMileage, other.minMileage);
+            maxMileage = Math.max(maxMileage, other.maxMileage);
+            if (other.fuelAmount > 0) {
+                addFuel(other.firstFuelMileage, other.firstFuelAmount, other.lastFuelMileage, other.fuelAmount);
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Итоги по одному автомобилю за один период
+     */
+    public static final class Summary {
+        private final String vehicleId;
+        private final LocalDate periodStart;
+        private final Map<RecordType, Double> costByType;
+        private final double totalCost;
+        private final double distance;
+        private final double fuelConsumption;
+
+        private Summary(String vehicleId, LocalDate periodStart, Accumulator accumulator) {
+            this.vehicleId = vehicleId;
+            this.periodStart = periodStart;
+            Map<RecordType, Double> costs = new EnumMap<>(RecordType.class);
+            for (RecordType type : TYPES) {
+                if (accumulator.costByType[type.ordinal()] != 0) {
+                    costs.put(type, accumulator.costByType[type.ordinal()]);
+                }
+            }
+            this.costByType = Collections.unmodifiableMap(costs);
+            this.totalCost = accumulator.totalCost;
+            this.distance = accumulator.maxMileage > accumulator.minMileage
+                    ? accumulator.maxMileage - accumulator.minMileage : 0;
+            double fuelDistance = accumulator.lastFuelMileage - accumulator.firstFuelMileage;
+            this.fuelConsumption = fuelDistance > 0
+                    ? (accumulator.fuelAmount - accumulator.firstFuelAmount) / fuelDistance * 100 : 0;
+        }
+
+        /**
+         * @return идентификатор автомобиля или null для записей без автомобиля
+         */
+        public String getVehicleId() { return vehicleId; }
+
+        /**
+         * @return первый день периода или null для периода ALL и записей без даты
+         */
+        public LocalDate getPeriodStart() { return periodStart; }
+
+        /**
+         * @return затраты по типам операций (типы без затрат не включаются)
+         */
+        public Map<RecordType, Double> getCostByType() { return costByType; }
+
+        public double getTotalCost() { return totalCost; }
+
+        /**
+         * @return пробег за период: разница наибольшего и наименьшего пробега в записях
+         */
+        public double getDistance() { return distance; }
+
+        /**
+         * @return стоимость километра в руб/км или 0, если пробег за период неизвестен
+         */
+        public double getCostPerKm() {
+            return distance > 0 ? totalCost / distance : 0;
+        }
+
+        /**
+         * Расход топлива между первой и последней заправкой периода; топливо первой
+         * заправки не учитывается, так как оно израсходовано до нее
+         * @return расход в л/100км или 0, если заправок меньше двух
+         */
+        public double getFuelConsumption() { return fuelConsumption; }
+    }
+
+    /**
+     * Рассчитывает итоги по автомобилям и периодам
+     * @param records записи журнала
+     * @param period длительность периода
+     * @return итоги, упорядоченные по автомобилю и началу периода
+     */
+    public static List<Summary> analyze(Collection<CarRecord> records, Period period) {
+        return analyze(new ColumnarRecordStore(records), period);
+    }
+
+    /**
+     * Рассчитывает итоги по автомобилям и периодам по колонкам хранилища
+     * @param store поколоночная копия журнала
+     * @param period длительность периода
+     * @return итоги, упорядоченные по автомобилю и началу периода
+     */
+    public static List<Summary> analyze(ColumnarRecordStore store, Period period) {
+        store.lock.readLock().lock();
+        try {
+            int size = store.size;
+            int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            IntStream indexes = IntStream.range(0, blocks);
+            if (blocks > 1) {
+                indexes = indexes.parallel();
+            }
+            Map<Long, Accumulator> groups = indexes
+                    .mapToObj(block -> scan(store, period, block * BLOCK_SIZE, Math.min(size, (block + 1) * BLOCK_SIZE)))
+                    .reduce(FleetAnalytics::merge)
+                    .orElseGet(HashMap::new);
+
+            List<Summary> summaries = new ArrayList<>(groups.size());
+            groups.forEach((key, accumulator) -> {
+                int periodStart = (int) (long) key;
+                summaries.add(new Summary(store.vehicles.get((int) (key >>> 32)),
+                        periodStart == ColumnarRecordStore.NO_DATE ? null : LocalDate.ofEpochDay(periodStart),
+                        accumulator));
+            });
+            summaries.sort(Comparator.comparing(Summary::getVehicleId, Comparator.nullsFirst(Comparator.naturalOrder()))
+                    .thenComparing(Summary::getPeriodStart, Comparator.nullsFirst(Comparator.naturalOrder())));
+            return summaries;
+        } finally {
+            store.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Обрабатывает блок строк; соседние строки обычно относятся к одной группе,
+     * поэтому последняя группа и последний период запоминаются
+     */
+    private static Map<Long, Accumulator> scan(ColumnarRecordStore store, Period period, int from, int to) {
+        Map<Long, Accumulator> groups = new HashMap<>();
+        double[] cost = store.cost;
+        double[] mileage = store.mileage;
+        double[] fuelAmount = store.fuelAmount;
+        byte[] type = store.type;
+        int[] date = store.date;
+        int[] vehicle = store.vehicle;
+
+        int lastDay = ColumnarRecordStore.NO_DATE;
+        int lastStart = period.start(lastDay);
+        long lastKey = 0;
+        Accumulator current = null;
+        for (int row = from; row < to; row++) {
+            if (date[row] != lastDay) {
+                lastDay = date[row];
+                lastStart = period.start(lastDay);
+            }
+            long key = ((long) vehicle[row] << 32) | (lastStart & 0xFFFFFFFFL);
+            if (current == null || key != lastKey) {
+                current = groups.computeIfAbsent(key, ignored -> new Accumulator());
+                lastKey = key;
+            }
+            current.add(cost[row], type[row], mileage[row], fuelAmount[row]);
+        }
+        return groups;
+    }
+
+    private static Map<Long, Accumulator> merge(Map<Long, Accumulator> left, Map<Long, Accumulator> right) {
+        right.forEach((key, accumulator) -> left.merge(key, accumulator, Accumulator::merge));
+        return left;
+    }
+}
@@ -0,0 +1,223 @@
+package org.example.carjournal.service;
+
+import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.model.RecordStatus;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фоновый перевод просроченных записей в статус "В процессе".
+ * <p>
+ * Сроки активных записей хранятся в очереди с приоритетом, которая поддерживается
+ * по событиям изменения записей. Таймер взводится на начало дня, следующего
+ * за ближайшим сроком, поэтому работа выполняется только тогда, когда какая-то
+ * запись действительно становится просроченной, а не периодическим просмотром
+ * всего журнала. Устаревшие элементы очереди (запись изменена или удалена)
+ * отбрасываются при извлечении.
+ */
+public class OverdueSweeper implements RecordChangeListener, AutoCloseable {
+    /**
+     * Пауза перед повторной обработкой записей, которые не удалось пометить
+     */
+    private static final long RETRY_DELAY_MS = TimeUnit.MINUTES.toMillis(1);
+    /**
+     * Срок записи в очереди
+     */
+    private static final class Due {
+        final LocalDate dueDate;
+        final String id;
+
+        Due(LocalDate dueDate, String id) {
+            this.dueDate = dueDate;
+            this.id = id;
+        }
+    }
+
+    private final CarRecordService service;
+    private final Clock clock;
+    private final PriorityQueue<Due> queue = new PriorityQueue<>(Comparator.comparing((Due due) -> due.dueDate));
+    /**
+     * Актуальный срок каждой активной записи; элемент очереди действителен,
+     * только если совпадает с этим сроком
+     */
+    private final Map<String, LocalDate> scheduled = new HashMap<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "overdue-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ScheduledFuture<?> wakeup;
+    /**
+     * Срок, на который взведен таймер (null, если таймер не взведен)
+     */
+    private LocalDate wakeupDueDate;
+    private boolean started;
+
+    /**
+     * @param service сервис записей; планировщик подписывается на его события
+     * @param clock источник текущего времени и часового пояса
+     */
+    public OverdueSweeper(CarRecordService service, Clock clock) {
+        this.service = service;
+        this.clock = clock;
+        service.addChangeListener(this);
+        for (CarRecord record : service.filterByStatus(RecordStatus.ACTIVE)) {
+            track(record);
+        }
+    }
+
+    /**
+     * Запускает таймер; записи, срок которых уже истек, обрабатываются сразу
+     */
+    public synchronized void start() {
+        started = true;
+        reschedule();
+    }
+
+    @Override
+    public void onRecordsChanged(RecordChangeEvent event) {
+        synchronized (this) {
+            if (event.getType() == RecordChangeEvent.Type.REMOVED) {
+                event.getIds().forEach(scheduled::remove);
+            } else {
+                event.getRecords().forEach(this::track);
+            }
+            reschedule();
+        }
+    }
+
+    private void track(CarRecord record) {
+        if (record.getStatus() != RecordStatus.ACTIVE || record.getDueDate() == null) {
+            scheduled.remove(record.getId());
+            return;
+        }
+        LocalDate previous = scheduled.put(record.getId(), record.getDueDate());
+        if (!record.getDueDate().equals(previous)) {
+            queue.add(new Due(record.getDueDate(), record.getId()));
+        }
+    }
+
+    /**
+     * Взводит таймер на ближайший действительный срок, если он изменился
+     */
+    private void reschedule() {
+        if (!started) {
+            return;
+        }
+        LocalDate next = nextDueDate();
+        if (next == null || next.equals(wakeupDueDate)) {
+            return;
+        }
+        if (wakeup != null) {
+            wakeup.cancel(false);
+        }
+        // Запись просрочена, когда ее срок раньше текущей даты
+        Instant at = next.plusDays(1).atStartOfDay(clock.getZone()).toInstant();
+        long delay = Math.max(0, Duration.between(clock.instant(), at).toMillis());
+        wakeupDueDate = next;
+        wakeup = executor.schedule(this::sweep, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return ближайший действительный срок или null, если активных записей со сроком нет
+     */
+    synchronized LocalDate nextDueDate() {
+        // Устаревшие элементы накапливаются при частых изменениях сроков
+        if (queue.size() > 2 * scheduled.size() + 64) {
+            queue.clear();
+            scheduled.forEach((id, dueDate) -> queue.add(new Due(dueDate, id)));
+        }
+        while (!queue.isEmpty()) {
+            Due head = queue.peek();
+            if (head.dueDate.equals(scheduled.get(head.id))) {
+                return head.dueDate;
+            }
+            queue.poll();
+        }
+        return null;
+    }
+
+    /**
+     * Переводит в статус "В процессе" все записи со сроком раньше текущей даты
+     */
+    void sweep() {
+        LocalDate today = LocalDate.now(clock);
+        List<Due> taken = new ArrayList<>();
+        List<String> overdue = new ArrayList<>();
+        synchronized (this) {
+            wakeupDueDate = null;
+            wakeup = null;
+            while (!queue.isEmpty() && queue.peek().dueDate.isBefore(today)) {
+                Due due = queue.poll();
+                if (due.dueDate.equals(scheduled.get(due.id))) {
+                    scheduled.remove(due.id);
+                    taken.add(due);
+                    overdue.add(due.id);
+                }
+            }
+        }
+
+        if (!overdue.isEmpty()) {
+            try {
+                service.markOverdue(overdue, today);
+                System.out.println("Marked overdue: " + overdue.size() + " records");
+            } catch (RuntimeException e) {
+                System.err.println("Error marking overdue records: " + e.getMessage());
+                e.printStackTrace();
+                retryLater(taken);
+                return;
+            }
+        }
+
+        synchronized (this) {
+            reschedule();
+        }
+    }
+
+    /**
+     * Возвращает в очередь записи, которые не удалось пометить, и взводит таймер
+     * на повторную попытку через паузу, чтобы постоянная ошибка не занимала поток.
+     * Записи, срок которых за это время изменился, остаются с новым сроком
+     */
+    private synchronized void retryLater(List<Due> failed) {
+        for (Due due : failed) {
+            if (!scheduled.containsKey(due.id)) {
+                scheduled.put(due.id, due.dueDate);
+                queue.add(due);
+            }
+        }
+        if (!started || wakeup != null) {
+            return;
+        }
+        wakeupDueDate = nextDueDate();
+        wakeup = executor.schedule(this::sweep, RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Останавливает таймер и отписывается от событий сервиса
+     */
+    @Override
+    public void close() {
+        service.removeChangeListener(this);
+        synchronized (this) {
+            started = false;
+            if (wakeup != null) {
+                wakeup.cancel(false);
+            }
+        }
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,44 @@
+package org.example.carjournal.service;
+
+import org.example.carjournal.model.CarRecord;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Событие изменения записей журнала.
+ * Для добавленных и измененных записей содержит их актуальные данные,
+ * для удаленных - только идентификаторы.
+ */
+public final class RecordChangeEvent {
+    /**
+     * Вид изменения
+     */
+    public enum Type {
+        ADDED,
+        UPDATED,
+        REMOVED
+    }
+
+    private final Type type;
+    private final List<String> ids;
+    private final List<CarRecord> records;
+
+    RecordChangeEvent(Type type, List<String> ids, List<CarRecord> records) {
+        this.type = type;
+        this.ids = Collections.unmodifiableList(ids);
+        this.records = Collections.unmodifiableList(records);
+    }
+
+    public Type getType() { return type; }
+
+    /**
+     * @return идентификаторы затронутых записей
+     */
+    public List<String> getIds() { return ids; }
+
+    /**
+     * @return добавленные или измененные записи (пусто для {@link Type#REMOVED})
+     */
+    public List<CarRecord> getRecords() { return records; }
+}
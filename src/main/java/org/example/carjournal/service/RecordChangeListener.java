@@ -0,0 +1,10 @@
+package org.example.carjournal.service;
+
+/**
+ * Получатель событий изменения записей.
+ * Вызывается в потоке, выполнившем изменение, после обновления хранилища.
+ */
+@FunctionalInterface
+public interface RecordChangeListener {
+    void onRecordsChanged(RecordChangeEvent event);
+}
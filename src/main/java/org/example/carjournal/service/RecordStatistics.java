@@ -0,0 +1,162 @@
+package org.example.carjournal.service;
+
+import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.model.RecordType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Инкрементально поддерживаемая статистика по записям.
+ * <p>
+ * Хранит сумму затрат, мультимножество пробегов (для максимума) и упорядоченный
+ * по пробегу индекс заправок. Каждое изменение записи обновляет агрегаты за O(log N),
+ * а признак аномального расхода пересчитывается только для измененной заправки
+ * и ее соседей в индексе, вместо полной сортировки всех заправок.
+ */
+class RecordStatistics {
+    /**
+     * Порог аномалии: меньше 5 км на литр, то есть больше 20 л/100км
+     */
+    private static final double MIN_KM_PER_LITER = 5.0;
+
+    /**
+     * Учтенное в агрегатах состояние записи
+     */
+    private static final class Tracked {
+        final double cost;
+        final double mileage;
+        final FuelKey fuelKey;
+
+        Tracked(double cost, double mileage, FuelKey fuelKey) {
+            this.cost = cost;
+            this.mileage = mileage;
+            this.fuelKey = fuelKey;
+        }
+    }
+
+    /**
+     * Ключ заправки в индексе: пробег, а при равном пробеге - порядок добавления
+     */
+    private static final class FuelKey implements Comparable<FuelKey> {
+        final double mileage;
+        final long sequence;
+        final String id;
+        final double fuelAmount;
+
+        FuelKey(double mileage, long sequence, String id, double fuelAmount) {
+            this.mileage = mileage;
+            this.sequence = sequence;
+            this.id = id;
+            this.fuelAmount = fuelAmount;
+        }
+
+        @Override
+        public int compareTo(FuelKey other) {
+            int byMileage = Double.compare(mileage, other.mileage);
+            return byMileage != 0 ? byMileage : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private final Map<String, Tracked> tracked = new HashMap<>();
+    private final Map<String, Long> sequences = new HashMap<>();
+    private final TreeMap<Double, Integer> mileages = new TreeMap<>();
+    private final TreeSet<FuelKey> fuel = new TreeSet<>();
+    private final TreeSet<FuelKey> anomalies = new TreeSet<>();
+    private double totalCost;
+    private long nextSequence;
+
+    /**
+     * Учитывает новую или измененную запись
+     * @param record запись с актуальными данными
+     */
+    synchronized void upsert(CarRecord record) {
+        String id = record.getId();
+        untrack(id);
+
+        FuelKey fuelKey = null;
+        if (record.getType() == RecordType.FUEL) {
+            long sequence = sequences.computeIfAbsent(id, key -> nextSequence++);
+            fuelKey = new FuelKey(record.getMileage(), sequence, id, record.getFuelAmount());
+            fuel.add(fuelKey);
+            evaluate(fuelKey);
+            evaluate(fuel.higher(fuelKey));
+        }
+
+        tracked.put(id, new Tracked(record.getCost(), record.getMileage(), fuelKey));
+        totalCost += record.getCost();
+        mileages.merge(record.getMileage(), 1, Integer::sum);
+    }
+
+    /**
+     * Исключает запись из статистики
+     * @param id идентификатор удаленной записи
+     */
+    synchronized void remove(String id) {
+        untrack(id);
+        sequences.remove(id);
+    }
+
+    private void untrack(String id) {
+        Tracked previous = tracked.remove(id);
+        if (previous == null) {
+            return;
+        }
+
+        totalCost -= previous.cost;
+        mileages.computeIfPresent(previous.mileage, (mileage, count) -> count == 1 ? null : count - 1);
+        if (previous.fuelKey != null) {
+            FuelKey next = fuel.higher(previous.fuelKey);
+            fuel.remove(previous.fuelKey);
+            anomalies.remove(previous.fuelKey);
+            evaluate(next);
+        }
+    }
+
+    /**
+     * Пересчитывает признак аномалии заправки относительно предыдущей по пробегу
+     */
+    private void evaluate(FuelKey current) {
+        if (current == null) {
+            return;
+        }
+        FuelKey previous = fuel.lower(current);
+        boolean anomaly = false;
+        if (previous != null) {
+            double distance = current.mileage - previous.mileage;
+            double fuelEfficiency = distance / current.fuelAmount;
+            anomaly = fuelEfficiency < MIN_KM_PER_LITER;
+        }
+
+        if (anomaly) {
+            anomalies.add(current);
+        } else {
+            anomalies.remove(current);
+        }
+    }
+
+    /**
+     * @return стоимость владения в руб/км (сумма затрат / максимальный пробег)
+     */
+    synchronized double costPerKm() {
+        if (tracked.isEmpty()) {
+            return 0.0;
+        }
+        return totalCost / mileages.lastKey();
+    }
+
+    /**
+     * @return идентификаторы заправок с аномальным расходом в порядке пробега
+     */
+    synchronized List<String> anomalyIds() {
+        List<String> ids = new ArrayList<>(anomalies.size());
+        for (FuelKey key : anomalies) {
+            ids.add(key.id);
+        }
+        return ids;
+    }
+}
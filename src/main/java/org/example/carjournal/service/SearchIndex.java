@@ -0,0 +1,225 @@
+package org.example.carjournal.service;
+
+import org.example.carjournal.model.CarRecord;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Инвертированный индекс для полнотекстового поиска по записям.
+ * <p>
+ * Название, описание и тип записи разбиваются на слова, которые приводятся
+ * к нижнему регистру (буква "ё" заменяется на "е"). Индекс хранит для каждого
+ * слова список записей с весами, а слова упорядочены, поэтому поиск по началу
+ * слова сводится к просмотру диапазона ключей. Индекс обновляется при каждом
+ * изменении записи и не требует повторной обработки текста при поиске.
+ */
+class SearchIndex {
+    private static final int TITLE_WEIGHT = 3;
+    private static final int TYPE_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    /**
+     * Множитель веса при точном совпадении слова (а не только его начала)
+     */
+    private static final int EXACT_MATCH_FACTOR = 2;
+
+    /**
+     * Слово -> (идентификатор записи -> вес слова в записи)
+     */
+    private final TreeMap<String, Map<String, Integer>> postings = new TreeMap<>();
+    /**
+     * Идентификатор записи -> проиндексированные слова (для удаления)
+     */
+    private final Map<String, Map<String, Integer>> documents = new HashMap<>();
+    /**
+     * Порядок добавления записей, используется при равной релевантности
+     */
+    private final Map<String, Long> sequences = new HashMap<>();
+    private long nextSequence;
+
+    /**
+     * Добавляет запись в индекс или переиндексирует измененную
+     * @param record запись с актуальными данными
+     */
+    synchronized void index(CarRecord record) {
+        String id = record.getId();
+        unindex(id);
+
+        Map<String, Integer> terms = new HashMap<>();
+        addTerms(terms, record.getTitle(), TITLE_WEIGHT);
+        addTerms(terms, record.getDescription(), DESCRIPTION_WEIGHT);
+        if (record.getType() != null) {
+            addTerms(terms, record.getType().getDisplayName(), TYPE_WEIGHT);
+        }
+
+        for (Map.Entry<String, Integer> term : terms.entrySet()) {
+            postings.computeIfAbsent(term.getKey(), key -> new HashMap<>()).put(id, term.getValue());
+        }
+        documents.put(id, terms);
+        sequences.computeIfAbsent(id, key -> nextSequence++);
+    }
+
+    /**
+     * Удаляет запись из индекса
+     * @param id идентификатор удаленной записи
+     */
+    synchronized void remove(String id) {
+        unindex(id);
+        sequences.remove(id);
+    }
+
+    private void unindex(String id) {
+        Map<String, Integer> terms = documents.remove(id);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms.keySet()) {
+            Map<String, Integer> docs = postings.get(term);
+            docs.remove(id);
+            if (docs.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    /**
+     * Ищет записи, содержащие слова, начинающиеся с каждого слова запроса
+     * @param query строка поиска
+     * @return идентификаторы найденных записей по убыванию релевантности,
+     *         или null если запрос не содержит слов
+     */
+    synchronized List<String> search(String query) {
+        List<String> queryTerms = tokenize(query);
+        if (queryTerms.isEmpty()) {
+            return null;
+        }
+
+        Map<String, Integer> scores = null;
+        for (String queryTerm : queryTerms) {
+            Map<String, Integer> termScores = match(queryTerm);
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                scores = intersect(scores, termScores);
+            }
+            if (scores.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+
+        Map<String, Integer> ranked = scores;
+        List<String> ids = new ArrayList<>(ranked.keySet());
+        ids.sort((first, second) -> {
+            int byScore = Integer.compare(ranked.get(second), ranked.get(first));
+            return byScore != 0 ? byScore : Long.compare(sequences.get(first), sequences.get(second));
+        });
+        return ids;
+    }
+
+    /**
+     * Проверяет, нашел бы поиск запись по запросу, не выполняя поиск целиком
+     * @param id идентификатор записи
+     * @param query строка поиска
+     * @return true, если каждое слово запроса является началом слова записи
+     */
+    synchronized boolean matches(String id, String query) {
+        Map<String, Integer> terms = documents.get(id);
+        if (terms == null) {
+            return false;
+        }
+        for (String queryTerm : tokenize(query)) {
+            boolean found = false;
+            for (String term : terms.keySet()) {
+                if (term.startsWith(queryTerm)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return идентификаторы всех проиндексированных записей в порядке добавления
+     */
+    synchronized List<String> allIds() {
+        List<String> ids = new ArrayList<>(documents.keySet());
+        ids.sort((first, second) -> Long.compare(sequences.get(first), sequences.get(second)));
+        return ids;
+    }
+
+    /**
+     * Собирает записи со словами, начинающимися с заданного, и их веса
+     */
+    private Map<String, Integer> match(String prefix) {
+        Map<String, Integer> scores = new HashMap<>();
+        NavigableMap<String, Map<String, Integer>> range =
+                postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        for (Map.Entry<String, Map<String, Integer>> term : range.entrySet()) {
+            int factor = term.getKey().equals(prefix) ? EXACT_MATCH_FACTOR : 1;
+            for (Map.Entry<String, Integer> doc : term.getValue().entrySet()) {
+                scores.merge(doc.getKey(), doc.getValue() * factor, Integer::sum);
+            }
+        }
+        return scores;
+    }
+
+    private static Map<String, Integer> intersect(Map<String, Integer> first, Map<String, Integer> second) {
+        if (first.size() > second.size()) {
+            Map<String, Integer> swap = first;
+            first = second;
+            second = swap;
+        }
+        Map<String, Integer> result = new HashMap<>();
+        for (Map.Entry<String, Integer> doc : first.entrySet()) {
+            Integer other = second.get(doc.getKey());
+            if (other != null) {
+                result.put(doc.getKey(), doc.getValue() + other);
+            }
+        }
+        return result;
+    }
+
+    private static void addTerms(Map<String, Integer> terms, String text, int weight) {
+        for (String term : tokenize(text)) {
+            terms.merge(term, weight, Integer::sum);
+        }
+    }
+
+    /**
+     * Разбивает текст на слова из букв и цифр и приводит их к единому регистру
+     * @param text исходный текст (может быть null)
+     * @return список слов
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String folded = text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        int start = -1;
+        for (int i = 0; i < folded.length(); i++) {
+            if (Character.isLetterOrDigit(folded.charAt(i))) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                tokens.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        if (start >= 0) {
+            tokens.add(folded.substring(start));
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,67 @@
+package org.example.carjournal.tools;
+
+import org.example.carjournal.dao.RecordFormatConverter;
+import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.model.Priority;
+import org.example.carjournal.model.RecordStatus;
+import org.example.carjournal.model.RecordType;
+import org.example.carjournal.util.RecordGenerator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Создает синтетический журнал заданного размера и состава.
+ * <p>
+ * Запуск: {@code JournalGenerator car_records.xml --count 100000 --types FUEL=5,REPAIR=1
+ * --statuses ACTIVE=3,COMPLETED=6 --priorities HIGH=1,LOW=3 --anomalies 0.05 --history 4 --seed 42}
+ * <p>
+ * Файл с расширением .bin записывается в двоичном формате, остальные - в XML.
+ */
+public final class JournalGenerator {
+
+    private JournalGenerator() {
+    }
+
+    /**
+     * Создает генератор записей по параметрам командной строки
+     */
+    static RecordGenerator createGenerator(Options options) {
+        RecordGenerator generator = new RecordGenerator(options.getLong("seed", 42))
+                .withAnomalyRate(options.getDouble("anomalies", 0.02))
+                .withMaxHistoryDepth(options.getInt("history", 2));
+        Map<RecordType, Integer> types = options.getWeights("types", RecordType.class);
+        if (types != null) {
+            generator.withTypeWeights(types);
+        }
+        Map<RecordStatus, Integer> statuses = options.getWeights("statuses", RecordStatus.class);
+        if (statuses != null) {
+            generator.withStatusWeights(statuses);
+        }
+        Map<Priority, Integer> priorities = options.getWeights("priorities", Priority.class);
+        if (priorities != null) {
+            generator.withPriorityWeights(priorities);
+        }
+        return generator;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Options options = new Options(args);
+        if (options.positional().size() != 1) {
+            System.err.println("Usage: JournalGenerator <target.xml|target.bin> [--count N] [--seed N]"
+                    + " [--types FUEL=5,...] [--statuses ACTIVE=1,...] [--priorities HIGH=1,...]"
+                    + " [--anomalies 0.02] [--history 2]");
+            System.exit(1);
+        }
+
+        Path target = Path.of(options.positional().get(0));
+        int count = options.getInt("count", 10000);
+        long start = System.nanoTime();
+        List<CarRecord> records = createGenerator(options).generate(count);
+        RecordFormatConverter.writeRecords(target, records);
+        System.out.printf("Generated %d records in %d ms: %s%n",
+                count, (System.nanoTime() - start) / 1_000_000, target.toAbsolutePath());
+    }
+}
@@ -0,0 +1,237 @@
+package org.example.carjournal.tools;
+
+import org.example.carjournal.dao.ConcurrentCarRecordDAO;
+import org.example.carjournal.dao.RecordFormatConverter;
+import org.example.carjournal.dao.StaleRecordException;
+import org.example.carjournal.dao.XmlCarRecordDAO;
+import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.service.CarRecordService;
+import org.example.carjournal.util.RecordGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Нагрузочный тест сервиса без интерфейса.
+ * <p>
+ * Создает во временном каталоге журнал заданного размера, затем несколько потоков
+ * в течение заданного времени выполняют смесь операций (добавление, изменение,
+ * удаление, поиск, статистика) через {@link CarRecordService}. По каждой операции
+ * выводятся пропускная способность и перцентили задержки.
+ * <p>
+ * Запуск: {@code LoadTest --records 100000 --threads 4 --seconds 30
+ * --mix add=10,update=20,delete=5,search=45,stats=20}
+ * (генератор журнала принимает те же параметры, что и {@link JournalGenerator}).
+ */
+public final class LoadTest {
+    private static final String[] OPERATIONS = {"add", "update", "delete", "search", "stats"};
+    private static final String[] QUERIES = {"замена", "масл", "заправка аи", "ремонт подвески", "полис", "ш", "фильтр"};
+
+    private final CarRecordService service;
+    /**
+     * Идентификаторы существующих записей; доступ синхронизирован по самому списку
+     */
+    private final List<String> ids;
+    private final int[] mix;
+    private final int mixTotal;
+
+    private LoadTest(CarRecordService service, List<String> ids, int[] mix) {
+        this.service = service;
+        this.ids = ids;
+        this.mix = mix;
+        this.mixTotal = Arrays.stream(mix).sum();
+    }
+
+    /**
+     * Задержки операций одного потока в наносекундах
+     */
+    private static final class Latencies {
+        final long[][] samples = new long[OPERATIONS.length][1024];
+        final int[] counts = new int[OPERATIONS.length];
+
+        void add(int operation, long nanos) {
+            if (counts[operation] == samples[operation].length) {
+                samples[operation] = Arrays.copyOf(samples[operation], counts[operation] * 2);
+            }
+            samples[operation][counts[operation]++] = nanos;
+        }
+    }
+
+    private Latencies runWorker(long seed, long deadline) {
+        Random random = new Random(seed);
+        RecordGenerator generator = new RecordGenerator(seed);
+        Latencies latencies = new Latencies();
+        while (System.nanoTime() < deadline) {
+            int operation = pickOperation(random);
+            long start = System.nanoTime();
+            execute(operation, random, generator);
+            latencies.add(operation, System.nanoTime() - start);
+        }
+        return latencies;
+    }
+
+    private int pickOperation(Random random) {
+        int roll = random.nextInt(mixTotal);
+        for (int i = 0; i < mix.length; i++) {
+            roll -= mix[i];
+            if (roll < 0) {
+                return i;
+            }
+        }
+        return mix.length - 1;
+    }
+
+    private void execute(int operation, Random random, RecordGenerator generator) {
+        switch (OPERATIONS[operation]) {
+            case "add": {
+                CarRecord record = generator.next();
+                service.addRecord(record);
+                synchronized (ids) {
+                    ids.add(record.getId());
+                }
+                break;
+            }
+            case "update": {
+                String id = randomId(random, false);
+                if (id != null) {
+                    try {
+                        service.modifyRecord(id, record -> record.setCost(record.getCost() + 1));
+                    } catch (StaleRecordException e) {
+                        // запись удалена другим потоком
+                    }
+                }
+                break;
+            }
+            case "delete": {
+                String id = randomId(random, true);
+                if (id != null) {
+                    service.deleteRecord(id);
+                }
+                break;
+            }
+            case "search":
+                service.searchRecords(QUERIES[random.nextInt(QUERIES.length)]);
+                break;
+            default:
+                service.calculateCostPerKm();
+                service.findFuelAnomalies();
+        }
+    }
+
+    /**
+     * Выбирает случайный идентификатор, при удалении - исключая его из списка
+     */
+    private String randomId(Random random, boolean remove) {
+        synchronized (ids) {
+            if (ids.isEmpty()) {
+                return null;
+            }
+            int index = random.nextInt(ids.size());
+            String id = ids.get(index);
+            if (remove) {
+                ids.set(index, ids.get(ids.size() - 1));
+                ids.remove(ids.size() - 1);
+            }
+            return id;
+        }
+    }
+
+    private static void report(List<Latencies> results, double seconds) {
+        System.out.printf("%-8s %10s %10s %10s %10s %10s %10s %10s%n",
+                "op", "count", "ops/s", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us");
+        long total = 0;
+        for (int operation = 0; operation < OPERATIONS.length; operation++) {
+            int count = 0;
+            for (Latencies latencies : results) {
+                count += latencies.counts[operation];
+            }
+            if (count == 0) {
+                continue;
+            }
+            long[] merged = new long[count];
+            int offset = 0;
+            for (Latencies latencies : results) {
+                System.arraycopy(latencies.samples[operation], 0, merged, offset, latencies.counts[operation]);
+                offset += latencies.counts[operation];
+            }
+            Arrays.sort(merged);
+            total += count;
+            System.out.printf("%-8s %10d %10.0f %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    OPERATIONS[operation], count, count / seconds,
+                    percentile(merged, 0.50), percentile(merged, 0.90), percentile(merged, 0.99),
+                    percentile(merged, 0.999), merged[count - 1] / 1000.0);
+        }
+        System.out.printf("%-8s %10d %10.0f%n", "total", total, total / seconds);
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1000.0;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Options options = new Options(args);
+        int recordCount = options.getInt("records", 100000);
+        int threads = options.getInt("threads", Runtime.getRuntime().availableProcessors());
+        int seconds = options.getInt("seconds", 30);
+        Map<String, Integer> weights = options.getNamedWeights("mix", "add=10,update=20,delete=5,search=45,stats=20");
+        int[] mix = new int[OPERATIONS.length];
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            mix[i] = weights.getOrDefault(OPERATIONS[i], 0);
+        }
+
+        Path dir = Files.createTempDirectory("car-journal-load");
+        Path file = dir.resolve("car_records.xml");
+        List<CarRecord> initial = JournalGenerator.createGenerator(options).generate(recordCount);
+        RecordFormatConverter.writeRecords(file, initial);
+        List<String> ids = new ArrayList<>(recordCount);
+        initial.forEach(record -> ids.add(record.getId()));
+        initial = null;
+
+        long loadStart = System.nanoTime();
+        CarRecordService service = new CarRecordService(
+                new ConcurrentCarRecordDAO(new XmlCarRecordDAO(file.toString())));
+        System.out.printf("Loaded %d records in %d ms, running %d threads for %d s%n", recordCount,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loadStart), threads, seconds);
+
+        LoadTest test = new LoadTest(service, ids, mix);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Latencies> results = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            long seed = options.getLong("seed", 42) + i + 1;
+            Thread worker = new Thread(() -> {
+                try {
+                    Latencies latencies = test.runWorker(seed, deadline);
+                    synchronized (results) {
+                        results.add(latencies);
+                    }
+                } catch (RuntimeException e) {
+                    System.err.println("Load test worker failed: " + e.getMessage());
+                    e.printStackTrace();
+                } finally {
+                    done.countDown();
+                }
+            }, "load-test-" + i);
+            worker.start();
+        }
+        done.await();
+
+        report(results, seconds);
+        System.out.printf("Conflict retries: %d%n", service.getConflictRetries());
+        service.close();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(path -> path.toFile().delete());
+        }
+        Files.deleteIfExists(dir);
+    }
+}
@@ -0,0 +1,87 @@
+package org.example.carjournal.tools;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Разбор аргументов командной строки вида {@code --ключ значение}
+ */
+final class Options {
+    private final Map<String, String> values = new HashMap<>();
+    private final List<String> positional = new ArrayList<>();
+
+    Options(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].startsWith("--")) {
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                values.put(args[i].substring(2), args[++i]);
+            } else {
+                positional.add(args[i]);
+            }
+        }
+    }
+
+    List<String> positional() {
+        return positional;
+    }
+
+    String get(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    int getInt(String name, int defaultValue) {
+        String value = values.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    long getLong(String name, long defaultValue) {
+        String value = values.get(name);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    double getDouble(String name, double defaultValue) {
+        String value = values.get(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    /**
+     * Разбирает веса вида {@code FUEL=5,REPAIR=1}
+     * @return веса или null, если параметр не задан
+     */
+    <E extends Enum<E>> Map<E, Integer> getWeights(String name, Class<E> type) {
+        String value = values.get(name);
+        if (value == null) {
+            return null;
+        }
+        Map<E, Integer> weights = new EnumMap<>(type);
+        for (String pair : value.split(",")) {
+            String[] parts = pair.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected NAME=weight in --" + name + ": " + pair);
+            }
+            weights.put(Enum.valueOf(type, parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+        }
+        return weights;
+    }
+
+    /**
+     * Разбирает веса операций вида {@code add=10,search=40}
+     */
+    Map<String, Integer> getNamedWeights(String name, String defaultValue) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String pair : get(name, defaultValue).split(",")) {
+            String[] parts = pair.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected name=weight in --" + name + ": " + pair);
+            }
+            weights.put(parts[0].trim().toLowerCase(), Integer.parseInt(parts[1].trim()));
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,219 @@
+package org.example.carjournal.util;
+
+import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.model.HistoryEntry;
+import org.example.carjournal.model.Priority;
+import org.example.carjournal.model.RecordStatus;
+import org.example.carjournal.model.RecordType;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Генератор синтетических записей журнала для нагрузочных тестов и бенчмарков.
+ * <p>
+ * Записи создаются в хронологическом порядке с растущим пробегом. Доли типов,
+ * статусов и приоритетов задаются весами, количество топлива в заправках
+ * соответствует пробегу с предыдущей заправки, а заданная доля заправок
+ * получает аномальный расход. При одинаковом начальном значении и настройках
+ * генератор выдает одинаковую последовательность.
+ */
+public class RecordGenerator {
+    private static final String[][] TITLES = {
+            {"Замена масла", "Плановое ТО", "Замена фильтров", "Замена тормозных колодок"},
+            {"Ремонт подвески", "Замена сцепления", "Ремонт стартера", "Кузовной ремонт"},
+            {"Заправка АИ-95", "Заправка АИ-92", "Заправка ДТ"},
+            {"Полис ОСАГО", "Полис КАСКО"},
+            {"Мойка", "Шиномонтаж", "Парковка", "Штраф"}
+    };
+    private static final String[] DESCRIPTIONS = {
+            "Масло 5W-30, масляный фильтр", "Передние колодки и диски", "Полный бак",
+            "Сезонная замена шин", "Диагностика ходовой части", "Воздушный и салонный фильтр"
+    };
+    private static final String[] HISTORY_ACTIONS = {
+            "Запись обновлена", "Статус изменен на 'В процессе' - просрочено", "Стоимость уточнена"
+    };
+
+    private final Random random;
+    private final Map<RecordType, Integer> typeWeights = new EnumMap<>(RecordType.class);
+    private final Map<RecordStatus, Integer> statusWeights = new EnumMap<>(RecordStatus.class);
+    private final Map<Priority, Integer> priorityWeights = new EnumMap<>(Priority.class);
+    private double anomalyRate = 0.02;
+    private int maxHistoryDepth = 2;
+
+    private LocalDate date = LocalDate.of(2015, 1, 1);
+    private double mileage = 10000;
+    private double lastFuelMileage = -1;
+
+    /**
+     * @param seed начальное значение генератора случайных чисел
+     */
+    public RecordGenerator(long seed) {
+        this.random = new Random(seed);
+        // Заправки составляют около половины журнала
+        typeWeights.put(RecordType.FUEL, 5);
+        typeWeights.put(RecordType.MAINTENANCE, 2);
+        typeWeights.put(RecordType.REPAIR, 1);
+        typeWeights.put(RecordType.INSURANCE, 1);
+        typeWeights.put(RecordType.OTHER, 1);
+        for (RecordStatus status : RecordStatus.values()) {
+            statusWeights.put(status, 1);
+        }
+        for (Priority priority : Priority.values()) {
+            priorityWeights.put(priority, 1);
+        }
+    }
+
+    /**
+     * Задает относительные доли типов записей; не указанные типы не генерируются
+     */
+    public RecordGenerator withTypeWeights(Map<RecordType, Integer> weights) {
+        replaceWeights(typeWeights, weights);
+        return this;
+    }
+
+    /**
+     * Задает относительные доли статусов записей
+     */
+    public RecordGenerator withStatusWeights(Map<RecordStatus, Integer> weights) {
+        replaceWeights(statusWeights, weights);
+        return this;
+    }
+
+    /**
+     * Задает относительные доли приоритетов записей
+     */
+    public RecordGenerator withPriorityWeights(Map<Priority, Integer> weights) {
+        replaceWeights(priorityWeights, weights);
+        return this;
+    }
+
+    /**
+     * @param anomalyRate доля заправок с аномальным расходом (от 0 до 1)
+     */
+    public RecordGenerator withAnomalyRate(double anomalyRate) {
+        if (anomalyRate < 0 || anomalyRate > 1) {
+            throw new IllegalArgumentException("Anomaly rate must be between 0 and 1: " + anomalyRate);
+        }
+        this.anomalyRate = anomalyRate;
+        return this;
+    }
+
+    /**
+     * @param maxHistoryDepth максимальное количество записей истории после создания
+     */
+    public RecordGenerator withMaxHistoryDepth(int maxHistoryDepth) {
+        if (maxHistoryDepth < 0) {
+            throw new IllegalArgumentException("History depth must not be negative: " + maxHistoryDepth);
+        }
+        this.maxHistoryDepth = maxHistoryDepth;
+        return this;
+    }
+
+    private static <E extends Enum<E>> void replaceWeights(Map<E, Integer> target, Map<E, Integer> weights) {
+        int total = 0;
+        for (int weight : weights.values()) {
+            if (weight < 0) {
+                throw new IllegalArgumentException("Weights must not be negative: " + weights);
+            }
+            total += weight;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("At least one weight must be positive: " + weights);
+        }
+        target.clear();
+        target.putAll(weights);
+    }
+
+    /**
+     * Создает заданное количество записей
+     * @param count количество записей
+     * @return список записей в хронологическом порядке
+     */
+    public List<CarRecord> generate(int count) {
+        List<CarRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(next());
+        }
+        return records;
+    }
+
+    /**
+     * @return следующая запись последовательности
+     */
+    public CarRecord next() {
+        // Примерно раз в два дня и 40-90 км между записями
+        if (random.nextBoolean()) {
+            date = date.plusDays(1);
+        }
+        mileage += 40 + random.nextInt(50);
+
+        RecordType type = pick(typeWeights);
+        String[] titles = TITLES[type.ordinal()];
+        CarRecord record = new CarRecord();
+        record.setId(new UUID(random.nextLong(), random.nextLong()).toString());
+        record.setTitle(titles[random.nextInt(titles.length)]);
+        record.setDescription(DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)]);
+        record.setType(type);
+        record.setMileage(mileage);
+        record.setDate(date);
+        record.setStatus(pick(statusWeights));
+        record.setPriority(pick(priorityWeights));
+        if (record.getStatus() == RecordStatus.ACTIVE || record.getStatus() == RecordStatus.PENDING) {
+            record.setDueDate(date.plusDays(random.nextInt(60)));
+        }
+
+        if (type == RecordType.FUEL) {
+            record.setFuelAmount(fuelAmount());
+            record.setFuelPrice(45 + random.nextInt(15));
+            record.setCost(Math.round(record.getFuelAmount() * record.getFuelPrice() * 100) / 100.0);
+            lastFuelMileage = mileage;
+        } else {
+            record.setCost(500 + random.nextInt(30000));
+        }
+
+        List<HistoryEntry> history = new ArrayList<>();
+        history.add(new HistoryEntry(date, "Запись создана"));
+        int depth = maxHistoryDepth == 0 ? 0 : random.nextInt(maxHistoryDepth + 1);
+        for (int i = 1; i <= depth; i++) {
+            history.add(new HistoryEntry(date.plusDays(i), HISTORY_ACTIONS[random.nextInt(HISTORY_ACTIONS.length)]));
+        }
+        record.setHistory(history);
+        return record;
+    }
+
+    /**
+     * Количество топлива по пробегу с предыдущей заправки: обычно 8-14 км/л,
+     * для аномалий - 2-4.5 км/л (порог аномалии сервиса - 5 км/л)
+     */
+    private double fuelAmount() {
+        if (lastFuelMileage < 0) {
+            return 30 + random.nextInt(25);
+        }
+        double distance = mileage - lastFuelMileage;
+        double kmPerLiter = random.nextDouble() < anomalyRate
+                ? 2 + random.nextDouble() * 2.5
+                : 8 + random.nextDouble() * 6;
+        return Math.round(distance / kmPerLiter * 10) / 10.0;
+    }
+
+    private <E extends Enum<E>> E pick(Map<E, Integer> weights) {
+        int total = 0;
+        for (int weight : weights.values()) {
+            total += weight;
+        }
+        int roll = random.nextInt(total);
+        for (Map.Entry<E, Integer> entry : weights.entrySet()) {
+            roll -= entry.getValue();
+            if (roll < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Weights changed during selection");
+    }
+}
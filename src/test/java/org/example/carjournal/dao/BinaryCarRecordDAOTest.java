@@ -0,0 +1,140 @@
+package org.example.carjournal.dao;
+
+import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.model.Priority;
+import org.example.carjournal.model.RecordStatus;
+import org.example.carjournal.model.RecordType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты двоичного хранилища и конвертера форматов
+ */
+class BinaryCarRecordDAOTest {
+
+    @TempDir
+    Path tempDir;
+
+    private CarRecord fuelRecord(int i) {
+        CarRecord record = new CarRecord();
+        record.setTitle("Заправка " + i);
+        record.setDescription(i % 2 == 0 ? null : "АИ-95");
+        record.setType(RecordType.FUEL);
+        record.setStatus(RecordStatus.COMPLETED);
+        record.setPriority(Priority.LOW);
+        record.setCost(2500.5 + i);
+        record.setMileage(10000 + i * 450);
+        record.setFuelAmount(40.2);
+        record.setFuelPrice(56.7);
+        record.setDate(LocalDate.of(2024, 1, 1).plusDays(i));
+        record.setDueDate(i % 3 == 0 ? null : LocalDate.of(2024, 6, 1));
+        record.addHistoryEntry("Запись создана");
+        record.addHistoryEntry("Запись обновлена");
+        return record;
+    }
+
+    private void assertSameRecord(CarRecord expected, CarRecord actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(expected.getStatus(), actual.getStatus());
+        assertEquals(expected.getPriority(), actual.getPriority());
+        assertEquals(expected.getCost(), actual.getCost());
+        assertEquals(expected.getMileage(), actual.getMileage());
+        assertEquals(expected.getFuelAmount(), actual.getFuelAmount());
+        assertEquals(expected.getFuelPrice(), actual.getFuelPrice());
+        assertEquals(expected.getDate(), actual.getDate());
+        assertEquals(expected.getDueDate(), actual.getDueDate());
+        assertEquals(expected.getHistory().size(), actual.getHistory().size());
+        assertEquals(expected.getHistory().get(1).getAction(), actual.getHistory().get(1).getAction());
+        assertEquals(expected.getVersion(), actual.getVersion());
+    }
+
+    @Test
+    void testRoundTripThroughSnapshotAndJournal() {
+        String path = tempDir.resolve("car_records.bin").toString();
+        BinaryCarRecordDAO dao = new BinaryCarRecordDAO(path);
+        CarRecord first = fuelRecord(1);
+        CarRecord second = fuelRecord(2);
+        dao.save(first);
+        dao.update(first);
+        first = dao.findById(first.getId()).get();
+        dao.close();
+
+        // Вторая запись остается только в журнале
+        dao = new BinaryCarRecordDAO(path);
+        dao.save(second);
+        dao.update(second);
+        second = dao.findById(second.getId()).get();
+        dao.update(second);
+        second = dao.findById(second.getId()).get();
+        assertEquals(2, second.getVersion());
+        dao.flush().join();
+
+        BinaryCarRecordDAO reopened = new BinaryCarRecordDAO(path);
+        assertEquals(2, reopened.findAll().size());
+        assertSameRecord(first, reopened.findById(first.getId()).get());
+        assertSameRecord(second, reopened.findById(second.getId()).get());
+    }
+
+    @Test
+    void testConvertsXmlToBinaryAndBack() throws IOException {
+        Path xml = tempDir.resolve("car_records.xml");
+        XmlCarRecordDAO xmlDao = new XmlCarRecordDAO(xml.toString());
+        for (int i = 0; i < 20; i++) {
+            xmlDao.save(fuelRecord(i));
+        }
+        xmlDao.close();
+
+        Path binary = tempDir.resolve("car_records.bin");
+        assertEquals(20, RecordFormatConverter.xmlToBinary(xml, binary));
+        assertTrue(Files.size(binary) < Files.size(xml));
+
+        Path restored = tempDir.resolve("restored.xml");
+        assertEquals(20, RecordFormatConverter.binaryToXml(binary, restored));
+
+        XmlCarRecordDAO original = new XmlCarRecordDAO(xml.toString());
+        XmlCarRecordDAO roundTrip = new XmlCarRecordDAO(restored.toString());
+        for (CarRecord record : original.findAll()) {
+            assertSameRecord(record, roundTrip.findById(record.getId()).get());
+        }
+    }
+
+    @Test
+    void testTruncatedFileKeepsLeadingRecords() throws IOException {
+        Path path = tempDir.resolve("car_records.bin");
+        BinaryCarRecordDAO dao = new BinaryCarRecordDAO(path.toString());
+        for (int i = 0; i < 3; i++) {
+            dao.save(fuelRecord(i));
+        }
+        dao.close();
+
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, java.util.Arrays.copyOf(bytes, bytes.length - 10));
+
+        assertEquals(2, new BinaryCarRecordDAO(path.toString()).findAll().size());
+        assertTrue(Files.exists(tempDir.resolve("car_records.bin.corrupt")));
+    }
+
+    @Test
+    void testDecodesLegacyPayloadWithoutTrailingFields() throws IOException {
+        CarRecord record = fuelRecord(1);
+        byte[] payload = BinaryRecordCodec.encode(record);
+        // Версия записи (8 байт) и пустой автомобиль (1 байт) появились только в версии 2
+        byte[] legacy = java.util.Arrays.copyOf(payload, payload.length - 9);
+
+        CarRecord decoded = BinaryRecordCodec.decode(legacy, BinaryRecordCodec.LEGACY_VERSION);
+        assertEquals(record.getTitle(), decoded.getTitle());
+        assertEquals(0, decoded.getVersion());
+        assertNull(decoded.getVehicleId());
+        assertThrows(IOException.class, () -> BinaryRecordCodec.decode(legacy, BinaryRecordCodec.VERSION));
+    }
+}
@@ -0,0 +1,124 @@
+package org.example.carjournal.dao;
+
+import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.model.RecordStatus;
+import org.example.carjournal.model.RecordType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты потокобезопасной обертки хранилища
+ */
+class ConcurrentCarRecordDAOTest {
+
+    @TempDir
+    Path tempDir;
+
+    private CarRecord record(String title) {
+        CarRecord record = new CarRecord();
+        record.setTitle(title);
+        record.setType(RecordType.REPAIR);
+        return record;
+    }
+
+    @Test
+    void testParallelWritersAndReaders() throws Exception {
+        ConcurrentCarRecordDAO dao = new ConcurrentCarRecordDAO(
+                new XmlCarRecordDAO(tempDir.resolve("car_records.xml").toString()));
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int writer = 0; writer < 4; writer++) {
+            int id = writer;
+            tasks.add(executor.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    CarRecord record = record("Запись " + id + "-" + i);
+                    dao.save(record);
+                    if (i % 2 == 0) {
+                        record.setStatus(RecordStatus.COMPLETED);
+                        dao.update(record);
+                    } else {
+                        dao.delete(record.getId());
+                    }
+                }
+            }));
+        }
+        for (int reader = 0; reader < 2; reader++) {
+            tasks.add(executor.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    for (CarRecord record : dao.findAll()) {
+                        assertNotNull(record.getId());
+                    }
+                    dao.find(RecordQuery.builder().statuses(RecordStatus.COMPLETED).build());
+                }
+            }));
+        }
+        for (Future<?> task : tasks) {
+            task.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(1000, dao.count());
+        assertEquals(1000, dao.findAll().size());
+        assertEquals(1000, dao.find(RecordQuery.builder().statuses(RecordStatus.COMPLETED).build()).size());
+        dao.close();
+
+        XmlCarRecordDAO reopened = new XmlCarRecordDAO(tempDir.resolve("car_records.xml").toString());
+        assertEquals(1000, reopened.findAll().size());
+        reopened.close();
+    }
+
+    @Test
+    void testCompareAndSetRejectsReplacedRecord() {
+        ConcurrentCarRecordDAO dao = new ConcurrentCarRecordDAO(
+                new XmlCarRecordDAO(tempDir.resolve("car_records.xml").toString()));
+        CarRecord original = record("Ремонт");
+        dao.save(original);
+        List<CarRecord> before = dao.findAll();
+
+        CarRecord first = record("Ремонт (первый)");
+        first.setId(original.getId());
+        CarRecord second = record("Ремонт (второй)");
+        second.setId(original.getId());
+
+        assertTrue(dao.compareAndSet(original, first));
+        assertFalse(dao.compareAndSet(original, second));
+        assertEquals("Ремонт (первый)", dao.findById(original.getId()).get().getTitle());
+        // Ранее полученный снимок не меняется
+        assertEquals("Ремонт", before.get(0).getTitle());
+        assertThrows(UnsupportedOperationException.class, () -> before.add(second));
+        dao.close();
+    }
+
+    @Test
+    void testInPlaceEditAfterCompetingUpdateIsRejected() {
+        XmlCarRecordDAO journaled = new XmlCarRecordDAO(tempDir.resolve("car_records.xml").toString());
+        ConcurrentCarRecordDAO dao = new ConcurrentCarRecordDAO(journaled);
+        CarRecord original = record("Ремонт");
+        dao.save(original);
+
+        // Оба читателя получили запись версии 0, первый успел сохранить изменение
+        CarRecord stale = dao.findById(original.getId()).get();
+        CarRecord staleJournaled = journaled.findById(original.getId()).get();
+        CarRecord competing = dao.findById(original.getId()).get();
+        competing.setTitle("Ремонт (первый)");
+        dao.update(competing);
+
+        stale.setTitle("Ремонт (второй)");
+        assertThrows(StaleRecordException.class, () -> dao.update(stale));
+        staleJournaled.setTitle("Ремонт (второй)");
+        assertThrows(StaleRecordException.class, () -> journaled.update(staleJournaled));
+        assertEquals("Ремонт (первый)", dao.findById(original.getId()).get().getTitle());
+        assertEquals(1, dao.findById(original.getId()).get().getVersion());
+        dao.close();
+    }
+}
@@ -0,0 +1,94 @@
+package org.example.carjournal.dao;
+
+import org.example.carjournal.model.HistoryEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты журнала истории изменений
+ */
+class HistoryLogTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testActionsAreStoredOnceAndHistoryIsReplayed() throws IOException {
+        Path file = tempDir.resolve("history.log");
+        String action = "Запись обновлена";
+        HistoryLog log = new HistoryLog(file, HistoryLog.DEFAULT_RETENTION);
+        for (int i = 0; i < 50; i++) {
+            log.append("record-" + (i % 5), new HistoryEntry(LocalDate.of(2024, 1, 1).plusDays(i), action));
+        }
+        log.append("record-0", new HistoryEntry(null, "Запись создана"));
+        log.close();
+
+        // Текст действия не повторяется в каждой записи истории
+        assertTrue(Files.size(file) < 50L * action.getBytes(StandardCharsets.UTF_8).length, "size: " + Files.size(file));
+
+        HistoryLog reopened = new HistoryLog(file, HistoryLog.DEFAULT_RETENTION);
+        List<HistoryEntry> history = reopened.history("record-0");
+        assertEquals(11, history.size());
+        assertEquals(LocalDate.of(2024, 1, 1), history.get(0).getDate());
+        assertEquals(action, history.get(0).getAction());
+        assertNull(history.get(10).getDate());
+        assertEquals("Запись создана", history.get(10).getAction());
+        assertSame(history.get(0).getAction(), reopened.history("record-1").get(0).getAction());
+        assertTrue(reopened.history("missing").isEmpty());
+        reopened.close();
+    }
+
+    @Test
+    void testRetentionAndCompaction() {
+        Path file = tempDir.resolve("history.log");
+        HistoryLog log = new HistoryLog(file, 2);
+        for (int i = 0; i < 10; i++) {
+            log.append("kept", new HistoryEntry(LocalDate.of(2024, 1, 1 + i), "Изменение " + i));
+        }
+        log.append("removed", new HistoryEntry(LocalDate.of(2024, 2, 1), "Запись создана"));
+        log.remove("removed");
+        assertEquals(12, log.fileEntries());
+        assertEquals(List.of("Изменение 8", "Изменение 9"),
+                log.history("kept").stream().map(HistoryEntry::getAction).collect(Collectors.toList()));
+        log.close();
+
+        // При закрытии файл переписан без отброшенных и удаленных записей
+        HistoryLog reopened = new HistoryLog(file, 2);
+        assertEquals(2, reopened.fileEntries());
+        assertEquals(LocalDate.of(2024, 1, 10), reopened.history("kept").get(1).getDate());
+        assertFalse(reopened.contains("removed"));
+        reopened.append("kept", new HistoryEntry(LocalDate.of(2024, 3, 1), "Изменение 8"));
+        assertEquals("Изменение 8", reopened.history("kept").get(1).getAction());
+        reopened.close();
+    }
+
+    @Test
+    void testFlushCompletesAfterAppendedEntriesReachFile() throws IOException {
+        Path file = tempDir.resolve("history.log");
+        HistoryLog log = new HistoryLog(file, HistoryLog.DEFAULT_RETENTION);
+        for (int i = 0; i < 20; i++) {
+            log.append("record-" + i, new HistoryEntry(LocalDate.of(2024, 1, 1), "Запись создана"));
+        }
+        log.flush().join();
+
+        // Не закрываем журнал - имитируем аварийное завершение после сброса
+        int[] entries = new int[1];
+        RecordJournal.replay(file, (operation, payload) -> {
+            if (operation == RecordJournal.HISTORY_ENTRY) {
+                entries[0]++;
+            }
+        });
+        assertEquals(20, entries[0]);
+        log.close();
+    }
+}
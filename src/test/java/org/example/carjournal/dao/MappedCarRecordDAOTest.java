@@ -0,0 +1,251 @@
+package org.example.carjournal.dao;
+
+import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.model.CarRecordSummary;
+import org.example.carjournal.model.RecordStatus;
+import org.example.carjournal.model.RecordType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты хранилища на основе файла, отображенного в память
+ */
+class MappedCarRecordDAOTest {
+
+    @TempDir
+    Path tempDir;
+
+    private CarRecord record(String title, RecordType type, RecordStatus status) {
+        CarRecord record = new CarRecord();
+        record.setTitle(title);
+        record.setDescription("Описание: " + title);
+        record.setType(type);
+        record.setStatus(status);
+        record.setCost(1000);
+        record.setMileage(50000);
+        record.addHistoryEntry("Запись создана");
+        return record;
+    }
+
+    @Test
+    void testCrudAndReopen() {
+        String path = tempDir.resolve("car_records.dat").toString();
+        MappedCarRecordDAO dao = new MappedCarRecordDAO(path);
+        CarRecord repair = record("Ремонт", RecordType.REPAIR, RecordStatus.ACTIVE);
+        CarRecord fuel = record("Заправка", RecordType.FUEL, RecordStatus.COMPLETED);
+        CarRecord removed = record("Удалить", RecordType.OTHER, RecordStatus.ACTIVE);
+        dao.save(repair);
+        dao.save(fuel);
+        dao.save(removed);
+
+        repair.setStatus(RecordStatus.COMPLETED);
+        repair.setDueDate(LocalDate.of(2024, 3, 1));
+        dao.update(repair);
+        dao.delete(removed.getId());
+        dao.close();
+
+        MappedCarRecordDAO reopened = new MappedCarRecordDAO(path);
+        assertEquals(2, reopened.findAll().size());
+        CarRecord loaded = reopened.findById(repair.getId()).get();
+        assertEquals("Ремонт", loaded.getTitle());
+        assertEquals("Описание: Ремонт", loaded.getDescription());
+        assertEquals(RecordStatus.COMPLETED, loaded.getStatus());
+        assertEquals(LocalDate.of(2024, 3, 1), loaded.getDueDate());
+        assertEquals(1, loaded.getHistory().size());
+        assertEquals(1, loaded.getVersion());
+        assertFalse(reopened.findById(removed.getId()).isPresent());
+        assertEquals(2, reopened.find(RecordQuery.builder().statuses(RecordStatus.COMPLETED).build()).size());
+        assertEquals(1, reopened.find(RecordQuery.builder().types(RecordType.FUEL).build()).size());
+        reopened.close();
+    }
+
+    @Test
+    void testGrowsMappingAndCompactsOnClose() throws IOException {
+        Path path = tempDir.resolve("car_records.dat");
+        MappedCarRecordDAO dao = new MappedCarRecordDAO(path.toString());
+        CarRecord record = record("Заправка", RecordType.FUEL, RecordStatus.ACTIVE);
+        record.setDescription("x".repeat(10_000));
+        dao.save(record);
+        for (int i = 0; i < 200; i++) {
+            CarRecord current = dao.findById(record.getId()).get();
+            current.setCost(i);
+            dao.update(current);
+        }
+        dao.close();
+
+        assertTrue(Files.size(path) < 20_000);
+        MappedCarRecordDAO reopened = new MappedCarRecordDAO(path.toString());
+        List<CarRecord> all = reopened.findAll();
+        assertEquals(1, all.size());
+        assertEquals(199, all.get(0).getCost());
+        assertEquals(200, all.get(0).getVersion());
+        reopened.close();
+    }
+
+    @Test
+    void testFlushWritesRecordsWithoutClosing() throws IOException {
+        Path path = tempDir.resolve("car_records.dat");
+        MappedCarRecordDAO dao = new MappedCarRecordDAO(path.toString());
+        CarRecord record = record("Ремонт", RecordType.REPAIR, RecordStatus.ACTIVE);
+        dao.save(record);
+        dao.flush().join();
+
+        // Читаем файл в обход отображения, как после аварийного завершения
+        MappedCarRecordDAO copy = new MappedCarRecordDAO(
+                Files.copy(path, tempDir.resolve("copy.dat")).toString());
+        assertEquals("Ремонт", copy.findById(record.getId()).get().getTitle());
+        copy.close();
+        dao.close();
+    }
+
+    @Test
+    void testDamagedSlotLengthDiscardsTail() throws IOException {
+        Path path = tempDir.resolve("car_records.dat");
+        MappedCarRecordDAO dao = new MappedCarRecordDAO(path.toString());
+        CarRecord first = record("Ремонт", RecordType.REPAIR, RecordStatus.ACTIVE);
+        dao.save(first);
+        dao.save(record("Заправка", RecordType.FUEL, RecordStatus.ACTIVE));
+        dao.close();
+
+        // Обнуляем длину второго слота, как после недописанной страницы
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+            channel.read(length, 16);
+            channel.write(ByteBuffer.allocate(Integer.BYTES), 16 + length.flip().getInt());
+        }
+
+        MappedCarRecordDAO recovered = new MappedCarRecordDAO(path.toString());
+        assertEquals(1, recovered.findAll().size());
+        assertTrue(recovered.findById(first.getId()).isPresent());
+        recovered.save(record("Страховка", RecordType.INSURANCE, RecordStatus.ACTIVE));
+        recovered.close();
+
+        MappedCarRecordDAO reopened = new MappedCarRecordDAO(path.toString());
+        assertEquals(2, reopened.findAll().size());
+        reopened.close();
+    }
+
+    @Test
+    void testPreviousVersionIsUpgradedAndUnknownVersionRejected() throws IOException {
+        Path path = tempDir.resolve("car_records.dat");
+        MappedCarRecordDAO dao = new MappedCarRecordDAO(path.toString());
+        CarRecord record = record("Ремонт", RecordType.REPAIR, RecordStatus.ACTIVE);
+        dao.save(record);
+        dao.close();
+
+        writeHeaderVersion(path, 2);
+        MappedCarRecordDAO upgraded = new MappedCarRecordDAO(path.toString());
+        assertEquals("Ремонт", upgraded.findById(record.getId()).get().getTitle());
+        upgraded.close();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer version = ByteBuffer.allocate(Integer.BYTES);
+            channel.read(version, 4);
+            assertEquals(3, version.flip().getInt());
+        }
+
+        writeHeaderVersion(path, 1);
+        assertThrows(java.io.UncheckedIOException.class, () -> new MappedCarRecordDAO(path.toString()));
+    }
+
+    private static void writeHeaderVersion(Path path, int version) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(version).flip(), 4);
+        }
+    }
+
+    @Test
+    void testPagesAreSortedByDateField() {
+        MappedCarRecordDAO dao = new MappedCarRecordDAO(tempDir.resolve("car_records.dat").toString());
+        for (int day = 1; day <= 5; day++) {
+            CarRecord record = record("День " + day, RecordType.FUEL, RecordStatus.ACTIVE);
+            record.setDate(LocalDate.of(2024, 1, 6 - day));
+            dao.save(record);
+        }
+
+        assertEquals(5, dao.count());
+        List<CarRecord> page = dao.findPage(PageRequest.of(1, 2).sorted(PageRequest.Order.DATE_ASC));
+        assertEquals(2, page.size());
+        assertEquals("День 4", page.get(0).getTitle());
+        assertEquals("День 3", page.get(1).getTitle());
+        assertEquals("День 2", dao.findPage(PageRequest.of(1, 1)).get(0).getTitle());
+
+        // Краткие представления совпадают с полными записями той же страницы
+        List<CarRecordSummary> summaries = dao.findSummaryPage(PageRequest.of(1, 2).sorted(PageRequest.Order.DATE_ASC));
+        assertEquals(2, summaries.size());
+        for (int i = 0; i < summaries.size(); i++) {
+            CarRecordSummary summary = summaries.get(i);
+            assertEquals(CarRecordSummary.of(page.get(i)), summary);
+            assertEquals(page.get(i).getTitle(), summary.getTitle());
+            assertEquals(page.get(i).getDate(), summary.getDate());
+            assertEquals(RecordType.FUEL, summary.getType());
+            assertEquals(RecordStatus.ACTIVE, summary.getStatus());
+            assertEquals(1000, summary.getCost());
+        }
+        dao.close();
+    }
+
+    @Test
+    void testFindFiltersByFixedFields() {
+        MappedCarRecordDAO dao = new MappedCarRecordDAO(tempDir.resolve("car_records.dat").toString());
+        for (int i = 0; i < 6; i++) {
+            CarRecord record = record("Запись " + i, i % 2 == 0 ? RecordType.FUEL : RecordType.REPAIR, RecordStatus.ACTIVE);
+            record.setMileage(1000 * i);
+            record.setDate(LocalDate.of(2024, 1, 1 + i));
+            dao.save(record);
+        }
+
+        RecordQuery query = RecordQuery.builder()
+                .types(RecordType.FUEL)
+                .mileageBetween(1000.0, null)
+                .dateBetween(null, LocalDate.of(2024, 1, 5))
+                .build();
+        List<CarRecord> found = dao.find(query);
+        assertEquals(List.of("Запись 2", "Запись 4"),
+                found.stream().map(CarRecord::getTitle).collect(Collectors.toList()));
+        dao.close();
+    }
+
+    @Test
+    void testStreamSortsLimitsAndReadsRequestedFields() {
+        MappedCarRecordDAO dao = new MappedCarRecordDAO(tempDir.resolve("car_records.dat").toString());
+        for (int i = 0; i < 6; i++) {
+            CarRecord record = record("Запись " + i, RecordType.FUEL, i == 5 ? RecordStatus.COMPLETED : RecordStatus.ACTIVE);
+            record.setMileage(1000 * ((i * 4) % 6));
+            record.setVehicleId("car");
+            dao.save(record);
+        }
+
+        RecordQuery query = RecordQuery.builder()
+                .statuses(RecordStatus.ACTIVE)
+                .sortBy(RecordQuery.Sort.MILEAGE_DESC)
+                .limit(2)
+                .fields(RecordQuery.Field.TITLE)
+                .build();
+        List<CarRecord> found = dao.stream(query).collect(Collectors.toList());
+        assertEquals(List.of("Запись 1", "Запись 4"),
+                found.stream().map(CarRecord::getTitle).collect(Collectors.toList()));
+        assertEquals(4000, found.get(0).getMileage());
+        assertNotNull(found.get(0).getId());
+        assertNull(found.get(0).getDescription());
+        assertTrue(found.get(0).getHistory().isEmpty());
+        assertNull(found.get(0).getVehicleId());
+
+        CarRecord full = dao.find(RecordQuery.builder().sortBy(RecordQuery.Sort.MILEAGE_DESC).limit(1).build()).get(0);
+        assertEquals("Описание: " + full.getTitle(), full.getDescription());
+        assertEquals("car", full.getVehicleId());
+        assertEquals(1, full.getHistory().size());
+        dao.close();
+    }
+}
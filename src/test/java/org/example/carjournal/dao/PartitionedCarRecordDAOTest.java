@@ -0,0 +1,110 @@
+package org.example.carjournal.dao;
+
+import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.model.CarRecordSummary;
+import org.example.carjournal.model.RecordStatus;
+import org.example.carjournal.model.RecordType;
+import org.example.carjournal.model.Vehicle;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты хранилища, разделенного по автомобилям
+ */
+class PartitionedCarRecordDAOTest {
+
+    @TempDir
+    Path tempDir;
+
+    private CarRecord record(String title, String vehicleId, LocalDate date) {
+        CarRecord record = new CarRecord();
+        record.setTitle(title);
+        record.setType(RecordType.FUEL);
+        record.setStatus(RecordStatus.ACTIVE);
+        record.setVehicleId(vehicleId);
+        record.setDate(date);
+        return record;
+    }
+
+    @Test
+    void testPartitionsAreOpenedLazilyAndQueriedTogether() {
+        PartitionedCarRecordDAO dao = new PartitionedCarRecordDAO(tempDir);
+        Vehicle vesta = new Vehicle("Lada Vesta", "А123ВС77");
+        Vehicle polo = new Vehicle("VW Polo", null);
+        dao.saveVehicle(vesta);
+        dao.saveVehicle(polo);
+        CarRecord unassigned = record("Мойка", null, LocalDate.of(2024, 1, 5));
+        CarRecord vestaFuel = record("Заправка Vesta", vesta.getId(), LocalDate.of(2024, 1, 1));
+        CarRecord poloFuel = record("Заправка Polo", polo.getId(), LocalDate.of(2024, 1, 3));
+        dao.save(unassigned);
+        dao.save(vestaFuel);
+        dao.save(poloFuel);
+        assertThrows(IllegalArgumentException.class, () -> dao.save(record("Чужой", "missing", null)));
+        dao.close();
+
+        PartitionedCarRecordDAO reopened = new PartitionedCarRecordDAO(tempDir);
+        assertEquals(2, reopened.findVehicles().size());
+        assertEquals("Lada Vesta (А123ВС77)", reopened.findVehicles().get(0).toString());
+        assertEquals(List.of(vestaFuel.getId()), ids(reopened.findByVehicle(vesta.getId())));
+        assertEquals(1, reopened.openPartitions());
+
+        assertEquals(3, reopened.count());
+        assertEquals(3, reopened.find(RecordQuery.builder().statuses(RecordStatus.ACTIVE).build()).size());
+        assertEquals(List.of(vestaFuel.getId(), poloFuel.getId()),
+                ids(reopened.findPage(PageRequest.of(0, 2).sorted(PageRequest.Order.DATE_ASC))));
+        assertEquals(List.of(vestaFuel.getId(), poloFuel.getId()),
+                ids(reopened.findPage(PageRequest.of(1, 5))));
+        assertEquals(List.of(poloFuel.getId(), vestaFuel.getId()),
+                reopened.findSummaryPage(PageRequest.of(1, 2).sorted(PageRequest.Order.DATE_DESC)).stream()
+                        .map(CarRecordSummary::getId).collect(Collectors.toList()));
+        reopened.close();
+
+        // Без сортировки разделы читаются по очереди до нужного количества записей
+        PartitionedCarRecordDAO limited = new PartitionedCarRecordDAO(tempDir);
+        RecordQuery first = RecordQuery.builder().statuses(RecordStatus.ACTIVE).limit(1).build();
+        assertEquals(List.of(unassigned.getId()), ids(limited.find(first)));
+        assertEquals(1, limited.openPartitions());
+        RecordQuery latest = RecordQuery.builder().sortBy(RecordQuery.Sort.DATE_DESC).limit(2).build();
+        assertEquals(List.of(unassigned.getId(), poloFuel.getId()), ids(limited.find(latest)));
+        limited.close();
+    }
+
+    @Test
+    void testUpdateMovesRecordBetweenVehicles() {
+        PartitionedCarRecordDAO dao = new PartitionedCarRecordDAO(tempDir);
+        Vehicle vesta = new Vehicle("Lada Vesta", null);
+        Vehicle polo = new Vehicle("VW Polo", null);
+        dao.saveVehicle(vesta);
+        dao.saveVehicle(polo);
+        CarRecord fuel = record("Заправка", vesta.getId(), null);
+        dao.save(fuel);
+        dao.close();
+
+        // Поиск по идентификатору открывает разделы, пока не найдет запись
+        PartitionedCarRecordDAO reopened = new PartitionedCarRecordDAO(tempDir);
+        CarRecord moved = reopened.findById(fuel.getId()).get().copy();
+        moved.setVehicleId(polo.getId());
+        reopened.update(moved);
+        assertEquals(1, reopened.findById(fuel.getId()).get().getVersion());
+        assertTrue(reopened.findByVehicle(vesta.getId()).isEmpty());
+        assertEquals(List.of(fuel.getId()), ids(reopened.findByVehicle(polo.getId())));
+
+        // Копия, прочитанная до переноса, устарела
+        CarRecord stale = fuel.copy();
+        assertThrows(StaleRecordException.class, () -> reopened.updateAll(List.of(stale)));
+        reopened.delete(fuel.getId());
+        assertFalse(reopened.findById(fuel.getId()).isPresent());
+        reopened.close();
+    }
+
+    private static List<String> ids(List<CarRecord> records) {
+        return records.stream().map(CarRecord::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,158 @@
+package org.example.carjournal.dao;
+
+import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.model.RecordStatus;
+import org.example.carjournal.model.RecordType;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты согласованности индексов хранилища в памяти
+ */
+class RecordIndexTest {
+
+    private CarRecord record(String id, RecordType type, RecordStatus status) {
+        CarRecord record = new CarRecord();
+        record.setId(id);
+        record.setType(type);
+        record.setStatus(status);
+        return record;
+    }
+
+    @Test
+    void testSecondaryIndexesFollowInPlaceChanges() {
+        RecordIndex index = new RecordIndex();
+        CarRecord record = record("1", RecordType.REPAIR, RecordStatus.ACTIVE);
+        index.put(record);
+        index.put(record("2", RecordType.FUEL, RecordStatus.ACTIVE));
+
+        // Статус и тип меняются на месте, затем запись переиндексируется
+        record.setStatus(RecordStatus.COMPLETED);
+        record.setType(RecordType.MAINTENANCE);
+        index.put(record);
+
+        assertEquals(2, index.size());
+        assertEquals(1, index.find(RecordQuery.builder().statuses(RecordStatus.ACTIVE).build()).size());
+        assertTrue(index.find(RecordQuery.builder().statuses(RecordStatus.COMPLETED).build()).contains(record));
+        assertTrue(index.find(RecordQuery.builder().types(RecordType.REPAIR).build()).isEmpty());
+        assertTrue(index.find(RecordQuery.builder().types(RecordType.MAINTENANCE).build()).contains(record));
+    }
+
+    @Test
+    void testRemoveClearsAllIndexes() {
+        RecordIndex index = new RecordIndex();
+        index.put(record("1", RecordType.FUEL, RecordStatus.PENDING));
+
+        assertNotNull(index.remove("1"));
+        assertNull(index.get("1"));
+        assertTrue(index.all().isEmpty());
+        assertTrue(index.find(RecordQuery.builder().statuses(RecordStatus.PENDING).build()).isEmpty());
+        assertTrue(index.find(RecordQuery.builder().types(RecordType.FUEL).build()).isEmpty());
+        assertNull(index.remove("1"));
+    }
+
+    @Test
+    void testPagesFollowRequestedOrder() {
+        RecordIndex index = new RecordIndex();
+        String[] dates = {"2024-03-01", null, "2024-01-01", "2024-02-01", "2024-01-01"};
+        for (int i = 0; i < dates.length; i++) {
+            CarRecord record = record(String.valueOf(i), RecordType.FUEL, RecordStatus.ACTIVE);
+            record.setDate(dates[i] == null ? null : LocalDate.parse(dates[i]));
+            index.put(record);
+        }
+        // Дата меняется на месте, затем запись переиндексируется
+        CarRecord moved = index.get("0");
+        moved.setDate(LocalDate.parse("2023-12-01"));
+        index.put(moved);
+
+        assertEquals(List.of("1", "2"), ids(index.page(PageRequest.Order.INSERTION, 1, 2)));
+        assertEquals(List.of("0", "2", "4", "3", "1"), ids(index.page(PageRequest.Order.DATE_ASC, 0, 10)));
+        assertEquals(List.of("2", "4", "0"), ids(index.page(PageRequest.Order.DATE_DESC, 1, 3)));
+        assertTrue(index.page(PageRequest.Order.DATE_ASC, 5, 10).isEmpty());
+    }
+
+    @Test
+    void testFindCombinesRangesWithTypeAndStatus() {
+        RecordIndex index = new RecordIndex();
+        for (int i = 0; i < 10; i++) {
+            CarRecord record = record(String.valueOf(i), i % 2 == 0 ? RecordType.MAINTENANCE : RecordType.FUEL,
+                    i < 5 ? RecordStatus.ACTIVE : RecordStatus.COMPLETED);
+            record.setMileage(50000 + i * 10000);
+            record.setDate(LocalDate.of(2024, 1 + i, 1));
+            record.setDueDate(i % 3 == 0 ? LocalDate.of(2025, 1 + i, 1) : null);
+            index.put(record);
+        }
+
+        RecordQuery maintenance = RecordQuery.builder()
+                .mileageBetween(60000.0, 90000.0)
+                .types(RecordType.MAINTENANCE)
+                .build();
+        assertEquals(List.of("2", "4"), ids(index.find(maintenance)));
+
+        RecordQuery spring = RecordQuery.builder()
+                .dateBetween(LocalDate.of(2024, 3, 1), LocalDate.of(2024, 5, 31))
+                .statuses(RecordStatus.ACTIVE)
+                .build();
+        assertEquals(List.of("2", "3", "4"), ids(index.find(spring)));
+
+        // Открытые границы и записи без срока
+        RecordQuery due = RecordQuery.builder().dueDateBetween(LocalDate.of(2025, 4, 1), null).build();
+        assertEquals(List.of("3", "6", "9"), ids(index.find(due)));
+        assertTrue(index.find(RecordQuery.builder().mileageBetween(90000.0, 60000.0).build()).isEmpty());
+        assertEquals(10, index.find(RecordQuery.builder().build()).size());
+
+        // Пробег меняется на месте, затем запись переиндексируется
+        CarRecord moved = index.get("2");
+        moved.setMileage(200000);
+        index.put(moved);
+        assertEquals(List.of("4"), ids(index.find(maintenance)));
+    }
+
+    @Test
+    void testSortedQueriesMatchFullSort() {
+        RecordIndex index = new RecordIndex();
+        List<CarRecord> all = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            CarRecord record = record(String.valueOf(i), RecordType.values()[i % RecordType.values().length],
+                    i % 3 == 0 ? RecordStatus.COMPLETED : RecordStatus.ACTIVE);
+            record.setMileage((i * 7919) % 50 * 1000);
+            record.setDate(i % 10 == 0 ? null : LocalDate.of(2024, 1, 1).plusDays((i * 31) % 17));
+            record.setCost(i * 13 % 11);
+            index.put(record);
+            all.add(record);
+        }
+
+        for (RecordQuery.Sort sort : RecordQuery.Sort.values()) {
+            for (int limit : new int[]{5, Integer.MAX_VALUE}) {
+                RecordQuery query = RecordQuery.builder()
+                        .statuses(RecordStatus.ACTIVE)
+                        .sortBy(sort)
+                        .limit(limit)
+                        .build();
+                List<CarRecord> expected = query.orderAndLimit(all.stream().filter(query::matches))
+                        .collect(Collectors.toList());
+                assertEquals(ids(expected), ids(index.find(query)), sort + ", limit " + limit);
+            }
+        }
+
+        RecordQuery latest = RecordQuery.builder()
+                .dateBetween(LocalDate.of(2024, 1, 10), null)
+                .sortBy(RecordQuery.Sort.DATE_DESC)
+                .limit(3)
+                .build();
+        List<CarRecord> found = index.find(latest);
+        assertEquals(3, found.size());
+        assertTrue(found.stream().allMatch(record -> !record.getDate().isBefore(LocalDate.of(2024, 1, 10))));
+        assertFalse(found.get(0).getDate().isBefore(found.get(2).getDate()));
+    }
+
+    private static List<String> ids(List<CarRecord> records) {
+        return records.stream().map(CarRecord::getId).collect(Collectors.toList());
+    }
+}
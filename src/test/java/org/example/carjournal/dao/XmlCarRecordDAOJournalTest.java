@@ -0,0 +1,186 @@
+package org.example.carjournal.dao;
+
+import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.model.RecordType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты журналируемого режима XML-хранилища
+ */
+class XmlCarRecordDAOJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    private String storagePath() {
+        return tempDir.resolve("car_records.xml").toString();
+    }
+
+    private CarRecord record(String title) {
+        CarRecord record = new CarRecord();
+        record.setTitle(title);
+        record.setType(RecordType.FUEL);
+        return record;
+    }
+
+    private long journalFiles() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.filter(path -> path.getFileName().toString().contains(".journal.")).count();
+        }
+    }
+
+    @Test
+    void testRecoversStateFromJournalWithoutSnapshot() {
+        XmlCarRecordDAO dao = new XmlCarRecordDAO(storagePath());
+        CarRecord first = record("Заправка 1");
+        CarRecord second = record("Заправка 2");
+        dao.save(first);
+        dao.save(second);
+        first.setTitle("Заправка 1 (исправлено)");
+        dao.update(first);
+        dao.delete(second.getId());
+        dao.flush().join();
+
+        // Не закрываем DAO - имитируем аварийное завершение
+        XmlCarRecordDAO recovered = new XmlCarRecordDAO(storagePath());
+        assertEquals(1, recovered.findAll().size());
+        assertEquals("Заправка 1 (исправлено)", recovered.findById(first.getId()).get().getTitle());
+        assertFalse(Files.exists(tempDir.resolve("car_records.xml")));
+    }
+
+    @Test
+    void testCloseFoldsJournalIntoSnapshot() throws IOException {
+        XmlCarRecordDAO dao = new XmlCarRecordDAO(storagePath());
+        CarRecord record = record("ТО");
+        dao.save(record);
+        dao.close();
+
+        assertTrue(Files.size(tempDir.resolve("car_records.xml")) > 0);
+        assertEquals(0, journalFiles());
+
+        XmlCarRecordDAO reopened = new XmlCarRecordDAO(storagePath());
+        assertTrue(reopened.findById(record.getId()).isPresent());
+        reopened.close();
+    }
+
+    @Test
+    void testBrokenJournalTailIsDiscarded() throws IOException {
+        XmlCarRecordDAO dao = new XmlCarRecordDAO(storagePath());
+        CarRecord record = record("Ремонт");
+        dao.save(record);
+        dao.flush().join();
+
+        // Недописанная запись в конце журнала
+        Files.write(tempDir.resolve("car_records.xml.journal.1"), new byte[]{RecordJournal.UPSERT, 0, 0, 1},
+                StandardOpenOption.APPEND);
+
+        XmlCarRecordDAO recovered = new XmlCarRecordDAO(storagePath());
+        assertEquals(1, recovered.findAll().size());
+        assertEquals("Ремонт", recovered.findById(record.getId()).get().getTitle());
+        // Недописанный хвост не считается повреждением файла
+        assertFalse(Files.exists(tempDir.resolve("car_records.xml.journal.1.corrupt")));
+    }
+
+    @Test
+    void testFlushCompletesAfterBurstIsDurable() {
+        XmlCarRecordDAO dao = new XmlCarRecordDAO(storagePath());
+        for (int i = 0; i < 100; i++) {
+            dao.save(record("Заправка " + i));
+        }
+        dao.flush().join();
+
+        XmlCarRecordDAO recovered = new XmlCarRecordDAO(storagePath());
+        assertEquals(100, recovered.findAll().size());
+        dao.close();
+    }
+
+    @Test
+    void testRecoversFromPreviousSnapshotWhenCurrentIsDamaged() throws IOException {
+        XmlCarRecordDAO dao = new XmlCarRecordDAO(storagePath());
+        CarRecord first = record("Заправка 1");
+        dao.save(first);
+        dao.close();
+
+        XmlCarRecordDAO reopened = new XmlCarRecordDAO(storagePath());
+        CarRecord second = record("Заправка 2");
+        reopened.save(second);
+        reopened.close();
+
+        // Прежний снимок и журнал, ведущий от него к текущему, сохранены
+        Path snapshot = tempDir.resolve("car_records.xml");
+        assertTrue(Files.exists(tempDir.resolve("car_records.xml.bak")));
+        assertTrue(Files.exists(tempDir.resolve("car_records.xml.journal.1.bak")));
+        assertFalse(Files.exists(tempDir.resolve("car_records.xml.journal.1")));
+
+        String xml = Files.readString(snapshot);
+        Files.writeString(snapshot, xml.substring(0, xml.indexOf("<title>")));
+
+        XmlCarRecordDAO recovered = new XmlCarRecordDAO(storagePath());
+        assertEquals(2, recovered.findAll().size());
+        assertTrue(recovered.findById(second.getId()).isPresent());
+        assertTrue(Files.exists(tempDir.resolve("car_records.xml.corrupt")));
+        recovered.close();
+
+        XmlCarRecordDAO restored = new XmlCarRecordDAO(storagePath());
+        assertEquals(2, restored.findAll().size());
+        restored.close();
+    }
+
+    @Test
+    void testJournalEntryWithBadChecksumStopsReplay() throws IOException {
+        XmlCarRecordDAO dao = new XmlCarRecordDAO(storagePath());
+        CarRecord first = record("Заправка 1");
+        CarRecord second = record("Заправка 2");
+        dao.save(first);
+        dao.save(second);
+        dao.flush().join();
+
+        // Портим байт внутри второй записи, не меняя длину файла
+        Path journalPath = tempDir.resolve("car_records.xml.journal.1");
+        byte[] bytes = Files.readAllBytes(journalPath);
+        bytes[bytes.length - 20] ^= 0x01;
+        Files.write(journalPath, bytes);
+
+        XmlCarRecordDAO recovered = new XmlCarRecordDAO(storagePath());
+        assertEquals(1, recovered.findAll().size());
+        assertTrue(recovered.findById(first.getId()).isPresent());
+    }
+
+    @Test
+    void testDamagedOperationInTheMiddleIsKeptForRecovery() throws IOException {
+        XmlCarRecordDAO dao = new XmlCarRecordDAO(storagePath());
+        CarRecord first = record("Заправка 1");
+        dao.save(first);
+        dao.save(record("Заправка 2"));
+        dao.save(record("Заправка 3"));
+        dao.flush().join();
+
+        // Портим тип операции второй записи: [заголовок файла: 5][тип: 1][длина: 4][CRC32: 4][данные]
+        Path journalPath = tempDir.resolve("car_records.xml.journal.1");
+        byte[] bytes = Files.readAllBytes(journalPath);
+        int second = 5 + 9 + ByteBuffer.wrap(bytes, 6, 4).getInt();
+        bytes[second] = 0x7F;
+        Files.write(journalPath, bytes);
+
+        XmlCarRecordDAO recovered = new XmlCarRecordDAO(storagePath());
+        assertEquals(1, recovered.findAll().size());
+        assertTrue(recovered.findById(first.getId()).isPresent());
+        assertArrayEquals(bytes, Files.readAllBytes(tempDir.resolve("car_records.xml.journal.1.corrupt")));
+    }
+
+    @Test
+    void testUnopenableJournalFailsConstruction() {
+        String path = tempDir.resolve("missing").resolve("car_records.xml").toString();
+        assertThrows(java.io.UncheckedIOException.class, () -> new XmlCarRecordDAO(path));
+    }
+}
@@ -57,6 +57,8 @@ class XmlCarRecordDAOTestAlternative {
 
     @AfterEach
     void tearDown() throws IOException {
+        carRecordDAO.close();
+
         // Восстанавливаем оригинальный файл из резервной копии
         File backupFile = new File(ORIGINAL_FILE_PATH + ".backup");
         if (backupFile.exists()) {
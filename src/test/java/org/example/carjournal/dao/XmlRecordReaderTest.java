@@ -0,0 +1,80 @@
+package org.example.carjournal.dao;
+
+import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.model.RecordType;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.example.carjournal.util.LocalDateModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты потокового чтения XML-файла с записями
+ */
+class XmlRecordReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path file;
+    private XmlMapper xmlMapper;
+
+    @BeforeEach
+    void setUp() {
+        file = tempDir.resolve("car_records.xml");
+        xmlMapper = new XmlMapper();
+        xmlMapper.registerModule(new JavaTimeModule());
+        xmlMapper.registerModule(new LocalDateModule());
+    }
+
+    private void writeRecords(int count) {
+        XmlCarRecordDAO dao = new XmlCarRecordDAO(file.toString());
+        for (int i = 0; i < count; i++) {
+            CarRecord record = new CarRecord();
+            record.setTitle("Запись " + i);
+            record.setType(RecordType.OTHER);
+            record.addHistoryEntry("Запись создана");
+            dao.save(record);
+        }
+        dao.close();
+    }
+
+    @Test
+    void testReadsAllRecords() throws IOException {
+        writeRecords(5);
+
+        List<CarRecord> records = new ArrayList<>();
+        XmlRecordReader.Result result = new XmlRecordReader(xmlMapper, file).forEach(records::add);
+
+        assertTrue(result.isComplete());
+        assertEquals(5, result.getCount());
+        assertEquals("Запись 4", records.get(4).getTitle());
+        assertEquals(1, records.get(0).getHistory().size());
+    }
+
+    @Test
+    void testDamagedTailKeepsLeadingRecords() throws IOException {
+        writeRecords(3);
+        String xml = Files.readString(file);
+        Files.writeString(file, xml.substring(0, xml.lastIndexOf("<title>")));
+
+        List<CarRecord> records = new ArrayList<>();
+        XmlRecordReader.Result result = new XmlRecordReader(xmlMapper, file).forEach(records::add);
+
+        assertFalse(result.isComplete());
+        assertEquals(2, records.size());
+
+        XmlCarRecordDAO dao = new XmlCarRecordDAO(file.toString());
+        assertEquals(2, dao.findAll().size());
+        assertTrue(Files.exists(tempDir.resolve("car_records.xml.corrupt")));
+    }
+}
@@ -0,0 +1,302 @@
+package org.example.carjournal.service;
+
+import org.example.carjournal.dao.HistoryLog;
+import org.example.carjournal.dao.PartitionedCarRecordDAO;
+import org.example.carjournal.dao.StaleRecordException;
+import org.example.carjournal.dao.XmlCarRecordDAO;
+import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.model.HistoryEntry;
+import org.example.carjournal.model.RecordStatus;
+import org.example.carjournal.model.RecordType;
+import org.example.carjournal.model.Vehicle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты бизнес-логики сервиса записей
+ */
+class CarRecordServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private XmlCarRecordDAO carRecordDAO;
+    private CarRecordService carRecordService;
+
+    @BeforeEach
+    void setUp() {
+        carRecordDAO = new XmlCarRecordDAO(tempDir.resolve("car_records.xml").toString());
+        carRecordService = new CarRecordService(carRecordDAO);
+    }
+
+    @AfterEach
+    void tearDown() {
+        carRecordDAO.close();
+    }
+
+    private CarRecord record(String title, RecordStatus status, LocalDate dueDate) {
+        CarRecord record = new CarRecord();
+        record.setTitle(title);
+        record.setType(RecordType.MAINTENANCE);
+        record.setStatus(status);
+        record.setDueDate(dueDate);
+        return record;
+    }
+
+    @Test
+    void testUpdateStatusesMarksOnlyOverdueActiveRecords() {
+        LocalDate today = LocalDate.now();
+        CarRecord overdue = record("Просрочено", RecordStatus.ACTIVE, today.minusDays(3));
+        CarRecord dueToday = record("Сегодня", RecordStatus.ACTIVE, today);
+        CarRecord completed = record("Завершено", RecordStatus.COMPLETED, today.minusDays(10));
+        CarRecord noDueDate = record("Без срока", RecordStatus.ACTIVE, null);
+        carRecordService.addRecord(overdue);
+        carRecordService.addRecord(dueToday);
+        carRecordService.addRecord(completed);
+        carRecordService.addRecord(noDueDate);
+
+        carRecordService.updateStatuses();
+
+        assertEquals(RecordStatus.PENDING, carRecordDAO.findById(overdue.getId()).get().getStatus());
+        // Без отдельного хранилища история сохраняется внутри записи
+        assertEquals(2, carRecordDAO.findById(overdue.getId()).get().getHistory().size());
+        assertEquals(2, carRecordService.getHistory(overdue.getId()).size());
+        assertEquals(RecordStatus.ACTIVE, carRecordDAO.findById(dueToday.getId()).get().getStatus());
+        assertEquals(RecordStatus.COMPLETED, carRecordDAO.findById(completed.getId()).get().getStatus());
+        assertEquals(RecordStatus.ACTIVE, carRecordDAO.findById(noDueDate.getId()).get().getStatus());
+        assertTrue(carRecordDAO.findDueBefore(RecordStatus.ACTIVE, today).isEmpty());
+    }
+
+    @Test
+    void testUpdateStatusesIsPersisted() {
+        CarRecord overdue = record("Просрочено", RecordStatus.ACTIVE, LocalDate.now().minusDays(1));
+        carRecordService.addRecord(overdue);
+        carRecordService.updateStatuses().join();
+
+        XmlCarRecordDAO reopened = new XmlCarRecordDAO(tempDir.resolve("car_records.xml").toString());
+        try {
+            assertEquals(RecordStatus.PENDING, reopened.findById(overdue.getId()).get().getStatus());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private CarRecord fuel(double mileage, double fuelAmount, double cost) {
+        CarRecord record = new CarRecord();
+        record.setTitle("Заправка " + mileage);
+        record.setType(RecordType.FUEL);
+        record.setMileage(mileage);
+        record.setFuelAmount(fuelAmount);
+        record.setCost(cost);
+        return record;
+    }
+
+    @Test
+    void testCostPerKmFollowsMutations() {
+        assertEquals(0.0, carRecordService.calculateCostPerKm());
+
+        CarRecord first = fuel(1000, 40, 2000);
+        CarRecord second = fuel(2000, 40, 3000);
+        carRecordService.addRecord(first);
+        carRecordService.addRecord(second);
+        assertEquals(2.5, carRecordService.calculateCostPerKm(), 1e-9);
+
+        second.setMileage(500);
+        carRecordService.updateRecord(second);
+        assertEquals(5.0, carRecordService.calculateCostPerKm(), 1e-9);
+
+        carRecordService.deleteRecord(first.getId());
+        assertEquals(6.0, carRecordService.calculateCostPerKm(), 1e-9);
+    }
+
+    @Test
+    void testFuelAnomaliesAreReevaluatedForNeighbours() {
+        CarRecord start = fuel(1000, 40, 0);
+        CarRecord normal = fuel(1500, 40, 0);
+        CarRecord heavy = fuel(1600, 40, 0);
+        carRecordService.addRecord(start);
+        carRecordService.addRecord(normal);
+        carRecordService.addRecord(heavy);
+        assertEquals(1, carRecordService.findFuelAnomalies().size());
+        assertEquals(heavy.getId(), carRecordService.findFuelAnomalies().get(0).getId());
+
+        // Новая заправка сама оказывается аномальной относительно предыдущей
+        CarRecord inserted = fuel(1100, 40, 0);
+        carRecordService.addRecord(inserted);
+        assertEquals(2, carRecordService.findFuelAnomalies().size());
+
+        // После удаления соседа последняя заправка сравнивается уже с 1100 км
+        carRecordService.deleteRecord(normal.getId());
+        assertEquals(1, carRecordService.findFuelAnomalies().size());
+        assertEquals(inserted.getId(), carRecordService.findFuelAnomalies().get(0).getId());
+
+        // Статистика восстанавливается из хранилища при создании сервиса
+        CarRecordService reopened = new CarRecordService(carRecordDAO);
+        assertEquals(1, reopened.findFuelAnomalies().size());
+        assertEquals(carRecordService.calculateCostPerKm(), reopened.calculateCostPerKm());
+    }
+
+    @Test
+    void testHistoryIsStoredApartFromRecords() {
+        String recordsFile = tempDir.resolve("history_records.xml").toString();
+        Path historyFile = tempDir.resolve("car_history.log");
+        XmlCarRecordDAO dao = new XmlCarRecordDAO(recordsFile);
+        // Запись прежнего формата с историей внутри
+        CarRecord legacy = record("Старая запись", RecordStatus.ACTIVE, null);
+        legacy.addHistoryEntry("Запись создана");
+        dao.save(legacy);
+
+        CarRecordService service = new CarRecordService(dao, new HistoryLog(historyFile, 3));
+        assertEquals(1, service.getHistory(legacy.getId()).size());
+        for (int i = 0; i < 4; i++) {
+            service.modifyRecord(legacy.getId(), record -> record.setCost(record.getCost() + 100)).join();
+        }
+        assertTrue(dao.findById(legacy.getId()).get().getHistory().isEmpty());
+        CarRecord removed = record("Удаленная запись", RecordStatus.ACTIVE, null);
+        service.addRecord(removed);
+        service.deleteRecord(removed.getId());
+        service.close();
+
+        XmlCarRecordDAO reopenedDao = new XmlCarRecordDAO(recordsFile);
+        CarRecordService reopened = new CarRecordService(reopenedDao, new HistoryLog(historyFile, 3));
+        assertTrue(reopenedDao.findById(legacy.getId()).get().getHistory().isEmpty());
+        // Хранятся только три последних изменения
+        assertEquals(List.of("Запись обновлена", "Запись обновлена", "Запись обновлена"),
+                reopened.getHistory(legacy.getId()).stream()
+                        .map(HistoryEntry::getAction).collect(Collectors.toList()));
+        assertTrue(reopened.getHistory(removed.getId()).isEmpty());
+        reopened.close();
+    }
+
+    @Test
+    void testSearchUsesIndexedPrefixesAndRanksTitleFirst() {
+        CarRecord oil = record("Замена масла", RecordStatus.ACTIVE, null);
+        oil.setDescription("Масло 5W-30, фильтр");
+        CarRecord filter = record("Фильтр салона", RecordStatus.ACTIVE, null);
+        filter.setDescription("Ещё заменён воздушный");
+        carRecordService.addRecord(oil);
+        carRecordService.addRecord(filter);
+
+        assertEquals(List.of(filter.getId(), oil.getId()), ids(carRecordService.searchRecords("ФИЛЬТ")));
+        assertEquals(List.of(oil.getId()), ids(carRecordService.searchRecords("масл 5w")));
+        // "ё" и "е" не различаются
+        assertEquals(List.of(filter.getId()), ids(carRecordService.searchRecords("еще")));
+        assertEquals(2, carRecordService.searchRecords("обслуживание").size());
+        assertEquals(2, carRecordService.searchRecords("  ").size());
+        assertTrue(carRecordService.matchesSearch(oil.getId(), "масл 5w"));
+        assertFalse(carRecordService.matchesSearch(filter.getId(), "масл 5w"));
+
+        oil.setTitle("Шиномонтаж");
+        oil.setDescription(null);
+        carRecordService.updateRecord(oil);
+        assertTrue(carRecordService.searchRecords("масло").isEmpty());
+        assertFalse(carRecordService.matchesSearch(oil.getId(), "масло"));
+
+        carRecordService.deleteRecord(filter.getId());
+        assertTrue(carRecordService.searchRecords("фильтр").isEmpty());
+    }
+
+    @Test
+    void testEditOfOpenedRecordKeepsVehicle() {
+        PartitionedCarRecordDAO partitioned = new PartitionedCarRecordDAO(tempDir.resolve("fleet"));
+        Vehicle vesta = new Vehicle("Lada Vesta", null);
+        partitioned.saveVehicle(vesta);
+        CarRecordService service = new CarRecordService(partitioned);
+        CarRecord record = record("Замена масла", RecordStatus.ACTIVE, null);
+        record.setVehicleId(vesta.getId());
+        service.addRecord(record);
+
+        // Форма редактирования меняет копию открытой записи
+        CarRecord edited = service.getRecordById(record.getId()).get().copy();
+        edited.setTitle("Замена масла и фильтра");
+        service.updateRecord(edited);
+
+        CarRecord stored = service.getRecordById(record.getId()).get();
+        assertEquals("Замена масла и фильтра", stored.getTitle());
+        assertEquals(vesta.getId(), stored.getVehicleId());
+        assertEquals(List.of(record.getId()), ids(partitioned.findByVehicle(vesta.getId())));
+        service.close();
+    }
+
+    private static List<String> ids(List<CarRecord> records) {
+        return records.stream().map(CarRecord::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    void testMutationsPublishChangeEvents() {
+        List<RecordChangeEvent> events = new ArrayList<>();
+        carRecordService.addChangeListener(events::add);
+
+        CarRecord overdue = record("Просрочено", RecordStatus.ACTIVE, LocalDate.now().minusDays(1));
+        carRecordService.addRecord(overdue);
+        carRecordService.updateRecord(overdue);
+        carRecordService.updateStatuses();
+        // Повторная проверка ничего не меняет и не публикует событие
+        carRecordService.updateStatuses();
+        carRecordService.deleteRecord(overdue.getId());
+
+        assertEquals(4, events.size());
+        assertEquals(RecordChangeEvent.Type.ADDED, events.get(0).getType());
+        assertEquals(RecordChangeEvent.Type.UPDATED, events.get(1).getType());
+        assertEquals(RecordChangeEvent.Type.UPDATED, events.get(2).getType());
+        assertEquals(RecordStatus.PENDING, events.get(2).getRecords().get(0).getStatus());
+        assertEquals(RecordChangeEvent.Type.REMOVED, events.get(3).getType());
+        assertEquals(List.of(overdue.getId()), events.get(3).getIds());
+        assertTrue(events.get(3).getRecords().isEmpty());
+    }
+
+    @Test
+    void testStaleUpdateIsRejectedAndRetriedModificationWins() {
+        CarRecord record = record("Замена масла", RecordStatus.ACTIVE, null);
+        record.setCost(1000);
+        carRecordService.addRecord(record);
+
+        // Две копии прочитаны одновременно, первая успевает сохраниться
+        CarRecord first = carRecordDAO.findById(record.getId()).get().copy();
+        CarRecord second = carRecordDAO.findById(record.getId()).get().copy();
+        first.setCost(1500);
+        carRecordService.updateRecord(first);
+        assertEquals(0, first.getVersion());
+        assertEquals(1, carRecordDAO.findById(record.getId()).get().getVersion());
+
+        second.setCost(2000);
+        StaleRecordException conflict = assertThrows(StaleRecordException.class,
+                () -> carRecordService.updateRecord(second));
+        assertEquals(0, conflict.getExpectedVersion());
+        assertEquals(1, conflict.getActualVersion());
+        assertEquals(1500, carRecordDAO.findById(record.getId()).get().getCost());
+
+        // Изменение через modifyRecord применяется к актуальной версии
+        carRecordService.modifyRecord(record.getId(), copy -> copy.setCost(copy.getCost() + 100)).join();
+        CarRecord stored = carRecordDAO.findById(record.getId()).get();
+        assertEquals(1600, stored.getCost());
+        assertEquals(2, stored.getVersion());
+
+        carRecordService.deleteRecord(record.getId());
+        assertThrows(StaleRecordException.class, () -> carRecordService.updateRecord(stored));
+        assertThrows(StaleRecordException.class,
+                () -> carRecordService.modifyRecord(record.getId(), copy -> copy.setCost(0)));
+    }
+
+    @Test
+    void testVersionIsPersisted() {
+        CarRecord record = record("Полис", RecordStatus.ACTIVE, null);
+        carRecordService.addRecord(record);
+        carRecordService.modifyRecord(record.getId(), copy -> copy.setCost(5000));
+        carRecordService.modifyRecord(record.getId(), copy -> copy.setCost(6000)).join();
+        carRecordDAO.close();
+
+        carRecordDAO = new XmlCarRecordDAO(tempDir.resolve("car_records.xml").toString());
+        assertEquals(2, carRecordDAO.findById(record.getId()).get().getVersion());
+    }
+}
@@ -0,0 +1,105 @@
+package org.example.carjournal.service;
+
+import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.model.RecordType;
+import org.example.carjournal.util.RecordGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты аналитики по парку автомобилей
+ */
+class FleetAnalyticsTest {
+
+    private CarRecord record(String vehicleId, RecordType type, String date, double mileage,
+                             double fuelAmount, double cost) {
+        CarRecord record = new CarRecord();
+        record.setVehicleId(vehicleId);
+        record.setType(type);
+        record.setDate(LocalDate.parse(date));
+        record.setMileage(mileage);
+        record.setFuelAmount(fuelAmount);
+        record.setCost(cost);
+        return record;
+    }
+
+    @Test
+    void testSummariesByVehicleAndMonth() {
+        List<CarRecord> records = List.of(
+                record("a", RecordType.FUEL, "2024-01-02", 1000, 40, 2000),
+                record("a", RecordType.REPAIR, "2024-01-10", 1200, 0, 5000),
+                record("a", RecordType.FUEL, "2024-01-20", 1500, 35, 1750),
+                record("a", RecordType.FUEL, "2024-02-03", 2000, 40, 2000),
+                record("b", RecordType.MAINTENANCE, "2024-01-15", 300, 0, 3000));
+
+        List<FleetAnalytics.Summary> summaries = FleetAnalytics.analyze(records, FleetAnalytics.Period.MONTH);
+        assertEquals(3, summaries.size());
+
+        FleetAnalytics.Summary january = summaries.get(0);
+        assertEquals("a", january.getVehicleId());
+        assertEquals(LocalDate.of(2024, 1, 1), january.getPeriodStart());
+        assertEquals(8750, january.getTotalCost());
+        assertEquals(3750, january.getCostByType().get(RecordType.FUEL));
+        assertEquals(5000, january.getCostByType().get(RecordType.REPAIR));
+        assertFalse(january.getCostByType().containsKey(RecordType.OTHER));
+        assertEquals(500, january.getDistance());
+        assertEquals(17.5, january.getCostPerKm(), 1e-9);
+        // 35 л на 500 км между заправками
+        assertEquals(7.0, january.getFuelConsumption(), 1e-9);
+
+        // Одна заправка за период - расход не определен
+        assertEquals(0, summaries.get(1).getFuelConsumption());
+        assertEquals("b", summaries.get(2).getVehicleId());
+        assertEquals(0, summaries.get(2).getCostPerKm());
+
+        FleetAnalytics.Summary total = FleetAnalytics.analyze(records, FleetAnalytics.Period.ALL).get(0);
+        assertNull(total.getPeriodStart());
+        assertEquals(1000, total.getDistance());
+        assertEquals(7.5, total.getFuelConsumption(), 1e-9);
+    }
+
+    @Test
+    void testParallelResultMatchesSequentialTotals() {
+        List<CarRecord> records = new RecordGenerator(7).generate(50_000);
+        for (int i = 0; i < records.size(); i++) {
+            records.get(i).setVehicleId("v" + i * 3 / records.size());
+        }
+
+        List<FleetAnalytics.Summary> summaries = FleetAnalytics.analyze(records, FleetAnalytics.Period.YEAR);
+        double expected = records.stream().mapToDouble(CarRecord::getCost).sum();
+        double actual = summaries.stream().mapToDouble(FleetAnalytics.Summary::getTotalCost).sum();
+        assertEquals(expected, actual, expected * 1e-9);
+        assertEquals("v0", summaries.get(0).getVehicleId());
+        assertTrue(summaries.get(0).getFuelConsumption() > 5 && summaries.get(0).getFuelConsumption() < 15);
+    }
+
+    @Test
+    void testColumnsFollowUpdatesAndSwapRemoval() {
+        ColumnarRecordStore store = new ColumnarRecordStore();
+        CarRecord first = record("a", RecordType.FUEL, "2024-01-02", 1000, 40, 2000);
+        CarRecord second = record("b", RecordType.REPAIR, "2024-01-10", 500, 0, 5000);
+        CarRecord third = record("a", RecordType.FUEL, "2024-01-20", 1500, 35, 1750);
+        first.setId("1");
+        second.setId("2");
+        third.setId("3");
+        store.upsert(first);
+        store.upsert(second);
+        store.upsert(third);
+
+        // Последняя строка переносится на место удаленной и остается доступной по id
+        store.remove("1");
+        third.setCost(1000);
+        store.upsert(third);
+        assertEquals(2, store.size());
+
+        List<FleetAnalytics.Summary> summaries = FleetAnalytics.analyze(store, FleetAnalytics.Period.ALL);
+        assertEquals(2, summaries.size());
+        assertEquals(1000, summaries.get(0).getTotalCost());
+        assertEquals(0, summaries.get(0).getFuelConsumption());
+        assertEquals(5000, summaries.get(1).getCostByType().get(RecordType.REPAIR));
+    }
+}
@@ -0,0 +1,130 @@
+package org.example.carjournal.service;
+
+import org.example.carjournal.dao.XmlCarRecordDAO;
+import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.model.RecordStatus;
+import org.example.carjournal.model.RecordType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты фонового перевода просроченных записей
+ */
+class OverdueSweeperTest {
+    private static final LocalDate TODAY = LocalDate.of(2024, 5, 10);
+
+    @TempDir
+    Path tempDir;
+
+    private XmlCarRecordDAO carRecordDAO;
+    private CarRecordService carRecordService;
+    private final Clock clock = Clock.fixed(TODAY.atTime(12, 0).toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+
+    @BeforeEach
+    void setUp() {
+        carRecordDAO = new XmlCarRecordDAO(tempDir.resolve("car_records.xml").toString());
+        carRecordService = new CarRecordService(carRecordDAO);
+    }
+
+    @AfterEach
+    void tearDown() {
+        carRecordDAO.close();
+    }
+
+    private CarRecord record(RecordStatus status, LocalDate dueDate) {
+        CarRecord record = new CarRecord();
+        record.setTitle("ТО");
+        record.setType(RecordType.MAINTENANCE);
+        record.setStatus(status);
+        record.setDueDate(dueDate);
+        carRecordService.addRecord(record);
+        return record;
+    }
+
+    private RecordStatus status(CarRecord record) {
+        return carRecordDAO.findById(record.getId()).get().getStatus();
+    }
+
+    @Test
+    void testQueueFollowsChangesAndSweepMarksOnlyOverdue() {
+        CarRecord overdue = record(RecordStatus.ACTIVE, TODAY.minusDays(2));
+        CarRecord dueToday = record(RecordStatus.ACTIVE, TODAY);
+        record(RecordStatus.COMPLETED, TODAY.minusDays(5));
+        OverdueSweeper sweeper = new OverdueSweeper(carRecordService, clock);
+        assertEquals(TODAY.minusDays(2), sweeper.nextDueDate());
+
+        // Добавленная после создания запись попадает в очередь по событию
+        CarRecord added = record(RecordStatus.ACTIVE, TODAY.minusDays(3));
+        assertEquals(TODAY.minusDays(3), sweeper.nextDueDate());
+        // Перенос срока и удаление убирают устаревшие элементы очереди
+        carRecordService.modifyRecord(added.getId(), copy -> copy.setDueDate(TODAY.plusDays(30)));
+        assertEquals(TODAY.minusDays(2), sweeper.nextDueDate());
+        carRecordService.deleteRecord(overdue.getId());
+        assertEquals(TODAY, sweeper.nextDueDate());
+
+        CarRecord late = record(RecordStatus.ACTIVE, TODAY.minusDays(1));
+        sweeper.sweep();
+        assertEquals(RecordStatus.PENDING, status(late));
+        assertEquals(RecordStatus.ACTIVE, status(dueToday));
+        assertEquals(RecordStatus.ACTIVE, status(added));
+        assertEquals(TODAY, sweeper.nextDueDate());
+        sweeper.close();
+    }
+
+    @Test
+    void testTimerFiresForAlreadyOverdueRecords() throws InterruptedException {
+        CarRecord overdue = record(RecordStatus.ACTIVE, TODAY.minusDays(1));
+        CountDownLatch updated = new CountDownLatch(1);
+        carRecordService.addChangeListener(event -> {
+            if (event.getType() == RecordChangeEvent.Type.UPDATED && event.getIds().contains(overdue.getId())) {
+                updated.countDown();
+            }
+        });
+
+        OverdueSweeper sweeper = new OverdueSweeper(carRecordService, clock);
+        sweeper.start();
+        assertTrue(updated.await(5, TimeUnit.SECONDS));
+        assertEquals(RecordStatus.PENDING, status(overdue));
+        assertNull(sweeper.nextDueDate());
+        sweeper.close();
+    }
+
+    @Test
+    void testFailedSweepKeepsRecordsQueued() {
+        CarRecord overdue = record(RecordStatus.ACTIVE, TODAY.minusDays(1));
+        boolean[] failing = {true};
+        CarRecordService service = new CarRecordService(carRecordDAO) {
+            @Override
+            CompletableFuture<Void> markOverdue(Collection<String> ids, LocalDate today) {
+                if (failing[0]) {
+                    throw new IllegalStateException("Хранилище недоступно");
+                }
+                return super.markOverdue(ids, today);
+            }
+        };
+        OverdueSweeper sweeper = new OverdueSweeper(service, clock);
+
+        sweeper.sweep();
+        assertEquals(RecordStatus.ACTIVE, status(overdue));
+        assertEquals(TODAY.minusDays(1), sweeper.nextDueDate());
+
+        failing[0] = false;
+        sweeper.sweep();
+        assertEquals(RecordStatus.PENDING, status(overdue));
+        assertNull(sweeper.nextDueDate());
+        sweeper.close();
+    }
+}
@@ -0,0 +1,52 @@
+package org.example.carjournal.util;
+
+import org.example.carjournal.dao.XmlCarRecordDAO;
+import org.example.carjournal.model.CarRecord;
+import org.example.carjournal.model.RecordType;
+import org.example.carjournal.service.CarRecordService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты генератора синтетических журналов
+ */
+class RecordGeneratorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSameSeedProducesSameJournal() {
+        List<CarRecord> first = new RecordGenerator(7).generate(50);
+        List<CarRecord> second = new RecordGenerator(7).generate(50);
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(first.get(i).getId(), second.get(i).getId());
+            assertEquals(first.get(i).getCost(), second.get(i).getCost());
+        }
+    }
+
+    @Test
+    void testInjectedAnomaliesAreDetectedByService() {
+        RecordGenerator generator = new RecordGenerator(1)
+                .withTypeWeights(Map.of(RecordType.FUEL, 1))
+                .withAnomalyRate(0.1)
+                .withMaxHistoryDepth(0);
+        XmlCarRecordDAO dao = new XmlCarRecordDAO(tempDir.resolve("car_records.xml").toString());
+        for (CarRecord record : generator.generate(1000)) {
+            assertEquals(RecordType.FUEL, record.getType());
+            assertEquals(1, record.getHistory().size());
+            dao.save(record);
+        }
+
+        CarRecordService service = new CarRecordService(dao);
+        int anomalies = service.findFuelAnomalies().size();
+        assertTrue(anomalies > 60 && anomalies < 140, "anomalies: " + anomalies);
+        service.close();
+    }
+}